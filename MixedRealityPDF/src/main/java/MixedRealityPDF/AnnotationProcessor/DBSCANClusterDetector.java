@@ -1,9 +1,13 @@
 package MixedRealityPDF.AnnotationProcessor;
 
+import MixedRealityPDF.Diagnostics.PipelineMetrics;
+import MixedRealityPDF.Diagnostics.StageEvent;
+import MixedRealityPDF.ImageProcessor.BitMask;
+import MixedRealityPDF.ImageProcessor.Downscaler;
+import MixedRealityPDF.ImageProcessor.SparseDifference;
 import org.apache.commons.math3.ml.clustering.Cluster;
 import org.apache.commons.math3.ml.clustering.DBSCANClusterer;
 
-import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.util.Collection;
 import java.util.HashSet;
@@ -15,8 +19,9 @@ public class DBSCANClusterDetector implements IClusterDetector {
     // Parameters for DBSCAN
     // epsilon: how close 2 points must be to be considered part of the same cluster, in millimetres
     // this is converted to pixels based on the width of the image
-    // Empirically, about 3mm works well
-    private static double DBSCAN_EPSILON_MM = 3.0;
+    // Empirically, about 1.5mm works well. Pooling widens strokes by up to a cell, so this is half what worked when the
+    // image was resampled instead.
+    private static double DBSCAN_EPSILON_MM = 1.5;
     // min-points: the minimum number of points in a cluster. Useful for excluding noise.
     // Empirically, about 5 works well
     private static int DBSCAN_MINPTS = 5;
@@ -33,25 +38,30 @@ public class DBSCANClusterDetector implements IClusterDetector {
      * @return Collection of AnnotationBoundingBox, one per annotation detected
      */
     public Collection<AnnotationBoundingBox> cluster(BufferedImage im){
+        return cluster(SparseDifference.of(im));
+    }
 
-        // If the image is more than 500 pixels wide, scale it down
-        double scale = 1.0d;
-        BufferedImage scaledImage;
-        if (im.getWidth() > SCALED_IMAGE_WIDTH){
-            scaledImage = getScaledImage(im, SCALED_IMAGE_WIDTH);
-            scale = ((double) im.getWidth()) / SCALED_IMAGE_WIDTH;
-        }
-        else{
-            // If the input is less than SCALED_IMAGE_WIDTH wide, don't bother scaling it
-            scaledImage = im;
-        }
+    /**
+     * Clusters the ink of `difference', taken straight from its spans rather than from an image of it.
+     */
+    @Override
+    public Collection<AnnotationBoundingBox> cluster(SparseDifference difference){
+
+        // If the difference is more than SCALED_IMAGE_WIDTH pixels wide, pool it down to that width. A cell is ink if
+        // any pixel it overlaps is, so thin strokes survive however far the difference is pooled.
+        int width = Math.min(difference.getWidth(), SCALED_IMAGE_WIDTH);
+        int height = (int) ((long) difference.getHeight() * width / difference.getWidth());
+        BitMask nonBlank = Downscaler.orPool(difference, width, height);
+        double scale = ((double) difference.getWidth()) / width;
 
         // Calculate epsilon in pixels (as opposed to millimetres)
         // Assumes the image represents an A4 document (210mm wide)
-        int epsilon = (int) ((DBSCAN_EPSILON_MM / 210.0) * scaledImage.getWidth());
+        double epsilon = (DBSCAN_EPSILON_MM / 210.0) * width;
 
         // Get a list of the pixels that are not white / transparent
-        Set<ClusteringPoint> pixelsToCluster = getNonBlankPixels(scaledImage);
+        Set<ClusteringPoint> pixelsToCluster = getNonBlankPixels(nonBlank);
+        PipelineMetrics.get().addClusteringPoints(pixelsToCluster.size());
+        StageEvent.addPoints(pixelsToCluster.size());
 
         // Get the clusters using DBSCAN
         List<Cluster<ClusteringPoint>> clusters = DBSCAN(pixelsToCluster, epsilon);
@@ -60,42 +70,32 @@ public class DBSCANClusterDetector implements IClusterDetector {
 
         Set<AnnotationBoundingBox> annotationSet = new HashSet<>();
         for (Cluster<ClusteringPoint> c : clusters){
-            annotationSet.add(new AnnotationBoundingBox(c, scale));
+            annotationSet.add(clamp(new AnnotationBoundingBox(c, scale), difference.getWidth(),
+                    difference.getHeight()));
         }
         return annotationSet;
     }
 
-    private static BufferedImage getScaledImage(BufferedImage im, int width){
-
-        // Image.getScaledInstance performs the scaling but returns an Image not a BufferedImage
-        Image scaledImage = im.getScaledInstance(width, -1, Image.SCALE_DEFAULT);
-
-        // Convert the Image to a BufferedImage by redrawing it with Graphics2D
-        BufferedImage imScaled = new BufferedImage(scaledImage.getWidth(null), scaledImage.getHeight(null), BufferedImage.TYPE_INT_ARGB);
-        Graphics2D bufferedGraphics2D = imScaled.createGraphics();
-        bufferedGraphics2D.drawImage(scaledImage, 0, 0, null);
-        bufferedGraphics2D.dispose();
-
-        return imScaled;
-    }
-
-    private Set<ClusteringPoint> getNonBlankPixels(BufferedImage im){
+    private Set<ClusteringPoint> getNonBlankPixels(BitMask nonBlank){
         /*
-         Iterate through all the pixels in im, and add the coordinates of any that are not white/transparent to a set.
+         Add the coordinates of every set bit to a set.
          */
-        Set<ClusteringPoint> nonBlankPixels = new HashSet<>();
-        for (int h = 0; h < im.getHeight(); h++){
-            for (int w = 0; w < im.getWidth(); w++){
-                int px = im.getRGB(w, h);
-                if (px != -1 && px != 0){ // -1 is white, 0 is transparent
-                    nonBlankPixels.add(new ClusteringPoint(w, h));
-                }
-            }
-        }
+        Set<ClusteringPoint> nonBlankPixels = new HashSet<>((int) (nonBlank.cardinality() / 0.75f) + 1);
+        nonBlank.forEach((w, h) -> nonBlankPixels.add(new ClusteringPoint(w, h)));
         return nonBlankPixels;
     }
 
-    private static List<Cluster<ClusteringPoint>> DBSCAN(Set<ClusteringPoint> points, int epsilon){
+    // Cells along the bottom edge of a pooled difference are scaled back by its width's scale, which can take them past
+    // the difference's last row, and so may the boxes around clusters that reach them. Cropping a box like that would
+    // fail.
+    private static AnnotationBoundingBox clamp(AnnotationBoundingBox box, int width, int height){
+        int left = Math.min(box.getTopLeft().getX(), width), right = Math.min(box.getTopRight().getX(), width);
+        int top = Math.min(box.getTopLeft().getY(), height), bottom = Math.min(box.getBottomLeft().getY(), height);
+        return new AnnotationBoundingBox(new ClusteringPoint(left, top), new ClusteringPoint(right, top),
+                new ClusteringPoint(left, bottom), new ClusteringPoint(right, bottom));
+    }
+
+    private static List<Cluster<ClusteringPoint>> DBSCAN(Set<ClusteringPoint> points, double epsilon){
         DBSCANClusterer<ClusteringPoint> clusterer = new DBSCANClusterer<>(epsilon, DBSCAN_MINPTS);
         return clusterer.cluster(points);
     }
@@ -1,10 +1,24 @@
 package MixedRealityPDF.AnnotationProcessor;
 
+import MixedRealityPDF.ImageProcessor.PageBufferPool;
+import MixedRealityPDF.ImageProcessor.SparseDifference;
+
 import java.awt.image.BufferedImage;
 import java.util.Collection;
 
 // Given an image containing clusters find the likely coordinates of the clusters.
 // k-means clustering ?
+// The image may be reused for later pages once cluster returns.
 public interface IClusterDetector {
   Collection<AnnotationBoundingBox> cluster(BufferedImage image);
+
+  // Same as cluster(image) for a difference kept sparse. By default the
+  // difference is drawn into an image first; detectors that can look
+  // through the spans instead should, as they only cover the ink.
+  default Collection<AnnotationBoundingBox> cluster(SparseDifference difference) {
+    BufferedImage image = difference.toImage();
+    Collection<AnnotationBoundingBox> clusters = cluster(image);
+    PageBufferPool.shared().release(image);
+    return clusters;
+  }
 }
@@ -6,11 +6,11 @@ import MixedRealityPDF.AnnotationProcessor.Annotations.Annotation;
 import MixedRealityPDF.AnnotationProcessor.Annotations.Highlight;
 import MixedRealityPDF.AnnotationProcessor.Annotations.Text;
 import MixedRealityPDF.AnnotationProcessor.Annotations.UnderLine;
+import MixedRealityPDF.ImageProcessor.BitMask;
 import MixedRealityPDF.ImageProcessor.ImgHelper;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
@@ -98,7 +98,9 @@ public class BasicClassifier implements IAnnotationIdentifier{
             int annotationWidth = annotationBoundingBox.getTopRight().getX()-annotationBoundingBox.getTopLeft().getX();
             int annotationHeight = annotationBoundingBox.getBottomLeft().getY() - annotationBoundingBox.getTopLeft().getY();
 
-            BufferedImage annotationSubImage = fullImage.getSubimage(topLeftX, topLeftY, annotationWidth, annotationHeight);
+            // A copy, as text annotations keep their image and the full image may be reused once the page is done.
+            BufferedImage annotationSubImage = ImgHelper.copy(
+                    fullImage.getSubimage(topLeftX, topLeftY, annotationWidth, annotationHeight));
 
             Annotation toAdd = BasicClassifier.identifySingleAnnotation(
                     fullImage,
@@ -165,8 +167,7 @@ public class BasicClassifier implements IAnnotationIdentifier{
 
 
     private static int getHeightOfActualAnnotation(BufferedImage subImage) {
-        BufferedImage blackNWhite = ImgHelper.computeBlackAndWhite(subImage);
-        ArrayList<String> vector = new ArrayList<>();
+        BitMask blackNWhite = ImgHelper.computeBlackAndWhiteMask(subImage);
         FeatureExtractorV2 featureExtractorV2 = new FeatureExtractorV2();
         int height = featureExtractorV2.height(blackNWhite);
         return height;
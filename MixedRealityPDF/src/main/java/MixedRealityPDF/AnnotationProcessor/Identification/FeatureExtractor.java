@@ -1,6 +1,7 @@
 package MixedRealityPDF.AnnotationProcessor.Identification;
 
 import MixedRealityPDF.ImageProcessor.ImgHelper;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
@@ -31,14 +32,11 @@ public class FeatureExtractor implements IFeatureExtractor{
      * **/
     public double getCoverage(BufferedImage image){
         double coverage;
-        int colour;
         double covered = 0;
-        for(int x = 0; x < image.getWidth(); x++){
-            for(int y = 0; y < image.getHeight(); y++){
-                colour = image.getRGB(x, y);
-                if(ImgHelper.isColor(colour)){
-                    covered++;
-                }
+        PixelBuffer pixels = PixelBuffer.of(image);
+        for(int i = 0; i < image.getWidth()*image.getHeight(); i++){
+            if(ImgHelper.isColor(pixels.get(i))){
+                covered++;
             }
         }
         coverage = covered/(double)(image.getWidth()*image.getHeight());
@@ -1,6 +1,8 @@
 package MixedRealityPDF.AnnotationProcessor.Identification;
 
+import MixedRealityPDF.ImageProcessor.BitMask;
 import MixedRealityPDF.ImageProcessor.ImgHelper;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
@@ -23,7 +25,7 @@ public class FeatureExtractorV2 implements IFeatureExtractor {
     if(img == null){
       return null;
     }
-    BufferedImage blackNWhite = ImgHelper.computeBlackAndWhite(img);
+    BitMask blackNWhite = ImgHelper.computeBlackAndWhiteMask(img);
     ArrayList<String> vector = new ArrayList<>();
     float invArea = 1 / (float)(img.getHeight() * img.getWidth());
 
@@ -59,13 +61,33 @@ public class FeatureExtractorV2 implements IFeatureExtractor {
     return maxH;
   }
 
+  /**
+   * height(BufferedImage) of a black and white image given as the mask of its black pixels.
+   */
+  public int height(BitMask blackAndWhite){
+    int width = blackAndWhite.getWidth();
+    int[] lo = new int[width];
+    int[] hi = new int[width];
+    Arrays.fill(lo, -1);
+    // Set bits come row by row, so the first one seen in a column is its top and the last its bottom.
+    blackAndWhite.forEach((x, y) -> {
+      if(lo[x] < 0)
+        lo[x] = y;
+      hi[x] = y;
+    });
+    int maxH = 0;
+    for(int x=0; x<width; x++)
+      if(lo[x] >= 0)
+        maxH = Math.max(maxH, hi[x]-lo[x]);
+    return maxH;
+  }
+
   public int color(BufferedImage image){
     int count = 0;
-    for(int x=0; x<image.getWidth(); x++){
-      for(int y=0; y<image.getHeight(); y++){
-        if(ImgHelper.isColor(image.getRGB(x, y)))
-          count++;
-      }
+    PixelBuffer pixels = PixelBuffer.of(image);
+    for(int i=0; i<image.getWidth()*image.getHeight(); i++){
+      if(ImgHelper.isColor(pixels.get(i)))
+        count++;
     }
     return count;
   }
@@ -80,4 +102,8 @@ public class FeatureExtractorV2 implements IFeatureExtractor {
     }
     return count;
   }
+
+  public int countBlack(BitMask blackAndWhite){
+    return (int) blackAndWhite.cardinality();
+  }
 }
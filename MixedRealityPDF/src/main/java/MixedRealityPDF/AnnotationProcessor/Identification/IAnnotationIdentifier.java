@@ -10,6 +10,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 
 // Given an image and a set of coordinates classify the Annotations.
+// Annotations must not refer to fullImage (e.g. through getSubimage) once
+// identifyAnnotations returns: the pipeline reuses it for later pages.
 public interface IAnnotationIdentifier {
   Collection<Annotation> identifyAnnotations(
           BufferedImage fullImage,
@@ -0,0 +1,124 @@
+package MixedRealityPDF.Diagnostics;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes debug images as PNGs into a directory of its own, encoding them on a
+ * background thread so the pipeline never waits for ImageIO. Only every Nth
+ * page is kept, and images that arrive while the queue is full are dropped
+ * rather than slowing the job down.
+ *
+ * Images dropped that way, and images that fail to be written, are counted
+ * (see getDroppedWrites and getFailedWrites), and close() warns once on
+ * System.err if there were any.
+ */
+public class AsyncDebugSink implements IDebugSink {
+
+  private static final int QUEUE_SIZE = 16;
+
+  private final File directory;
+  private final int everyNthPage;
+  private final ThreadPoolExecutor encoder;
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  // The first write that failed, for the warning on close().
+  private final AtomicReference<IOException> firstFailure =
+          new AtomicReference<>();
+
+  /**
+   * @param directory    where the PNGs go. Created if it does not exist.
+   * @param everyNthPage only pages whose index is a multiple of this are kept
+   */
+  public AsyncDebugSink(File directory, int everyNthPage) throws IOException {
+    if (everyNthPage < 1)
+      throw new IllegalArgumentException("everyNthPage must be at least 1");
+    this.directory = Files.createDirectories(directory.toPath()).toFile();
+    this.everyNthPage = everyNthPage;
+
+    encoder = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE),
+            runnable -> {
+              Thread thread = new Thread(runnable, "debug-sink " + directory);
+              thread.setDaemon(true);
+              thread.setPriority(Thread.MIN_PRIORITY);
+              return thread;
+            },
+            (runnable, executor) -> dropped.increment());
+  }
+
+  /**
+   * Creates a sink writing into a fresh, uniquely named directory under
+   * `parent', so that concurrent jobs never overwrite each other's images.
+   */
+  public static AsyncDebugSink inNewDirectory(File parent, int everyNthPage)
+          throws IOException {
+    Files.createDirectories(parent.toPath());
+    File directory = Files.createTempDirectory(parent.toPath(), "job-").toFile();
+    return new AsyncDebugSink(directory, everyNthPage);
+  }
+
+  public File getDirectory() {
+    return directory;
+  }
+
+  @Override
+  public boolean wants(int page) {
+    return page % everyNthPage == 0;
+  }
+
+  @Override
+  public void write(int page, String stage, BufferedImage image) {
+    if (!wants(page))
+      return;
+    File out = new File(directory, page + "-" + stage + ".png");
+    encoder.execute(() -> {
+      try {
+        ImageIO.write(image, "png", out);
+      } catch (IOException e) {
+        failed.increment();
+        firstFailure.compareAndSet(null, e);
+      }
+    });
+  }
+
+  /**
+   * @return Images dropped so far because the queue was full.
+   */
+  public long getDroppedWrites() {
+    return dropped.sum();
+  }
+
+  /**
+   * @return Images that could not be written so far.
+   */
+  public long getFailedWrites() {
+    return failed.sum();
+  }
+
+  @Override
+  public void close() {
+    encoder.shutdown();
+    try {
+      encoder.awaitTermination(1, TimeUnit.MINUTES);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    long dropped = getDroppedWrites(), failed = getFailedWrites();
+    if (dropped > 0 || failed > 0) {
+      IOException first = firstFailure.get();
+      System.err.println(String.format(
+              "Debug images missing from %s: %d dropped, %d failed%s",
+              directory, dropped, failed,
+              first == null ? "" : " (first: " + first + ")"));
+    }
+  }
+}
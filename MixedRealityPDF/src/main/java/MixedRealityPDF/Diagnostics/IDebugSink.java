@@ -0,0 +1,41 @@
+package MixedRealityPDF.Diagnostics;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Receives the intermediate images of the pipeline (rendered pages, aligned
+ * scan, difference map) so they can be inspected when debugging.
+ */
+public interface IDebugSink extends AutoCloseable {
+
+  /** Sink that drops everything. Used unless a job asks for debugging. */
+  IDebugSink NONE = new IDebugSink() {
+    @Override
+    public boolean wants(int page) {
+      return false;
+    }
+
+    @Override
+    public void write(int page, String stage, BufferedImage image) {}
+
+    @Override
+    public void close() {}
+  };
+
+  /**
+   * @return true iff images of this page should be passed to write. Lets the
+   * pipeline skip work for pages that are not sampled.
+   */
+  boolean wants(int page);
+
+  /**
+   * @param page  index of the page the image belongs to
+   * @param stage name of the pipeline stage that produced the image
+   * @param image must not be modified after being passed in
+   */
+  void write(int page, String stage, BufferedImage image);
+
+  /** Flushes anything still pending. */
+  @Override
+  void close();
+}
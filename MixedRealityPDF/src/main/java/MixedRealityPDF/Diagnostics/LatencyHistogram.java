@@ -0,0 +1,73 @@
+package MixedRealityPDF.Diagnostics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations. Bucket i counts durations of at most
+ * 2^i microseconds, so percentiles are accurate to within a factor of two,
+ * which is plenty to spot a stage getting slower.
+ */
+public class LatencyHistogram {
+
+  private static final int BUCKETS = 40;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder totalNanos = new LongAdder();
+  private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+  public LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++)
+      buckets[i] = new LongAdder();
+  }
+
+  public void record(long nanos) {
+    long micros = Math.max(1, nanos / 1000);
+    // index of the smallest power of two >= micros
+    int bucket = 64 - Long.numberOfLeadingZeros(micros - 1);
+    buckets[Math.min(bucket, BUCKETS - 1)].increment();
+    count.increment();
+    totalNanos.add(nanos);
+    maxNanos.accumulate(nanos);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public double getMeanMillis() {
+    long n = count.sum();
+    return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+  }
+
+  public double getMaxMillis() {
+    return maxNanos.get() / 1e6;
+  }
+
+  /**
+   * @param quantile between 0 and 1, e.g. 0.95
+   * @return Upper bound of the bucket holding the given quantile, in ms.
+   */
+  public double getPercentileMillis(double quantile) {
+    long n = count.sum();
+    if (n == 0)
+      return 0;
+    long rank = (long) Math.ceil(quantile * n);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets[i].sum();
+      if (seen >= rank)
+        return Math.min((1L << i) / 1000.0, getMaxMillis());
+    }
+    return getMaxMillis();
+  }
+
+  public void reset() {
+    for (LongAdder bucket : buckets)
+      bucket.reset();
+    count.reset();
+    totalNanos.reset();
+    maxNanos.reset();
+  }
+}
@@ -0,0 +1,108 @@
+package MixedRealityPDF.Diagnostics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable copy of PipelineMetrics at one point in time.
+ */
+public final class MetricsSnapshot {
+
+  /** Latency summary of one stage, in milliseconds. */
+  public static final class StageSummary {
+    public final long count;
+    public final double mean;
+    public final double p50;
+    public final double p95;
+    public final double p99;
+    public final double max;
+
+    StageSummary(LatencyHistogram histogram) {
+      count = histogram.getCount();
+      mean = histogram.getMeanMillis();
+      p50 = histogram.getPercentileMillis(0.50);
+      p95 = histogram.getPercentileMillis(0.95);
+      p99 = histogram.getPercentileMillis(0.99);
+      max = histogram.getMaxMillis();
+    }
+
+    @Override
+    public String toString() {
+      return String.format("n=%d mean=%.1fms p50=%.1fms p95=%.1fms "
+              + "p99=%.1fms max=%.1fms", count, mean, p50, p95, p99, max);
+    }
+  }
+
+  private final Map<Stage, StageSummary> stages;
+  private final long pagesProcessed;
+  private final long pagesSkipped;
+  private final long pixelsProcessed;
+  private final long clusteringPoints;
+  private final long clustersFound;
+  private final Map<String, Long> annotationsByType;
+
+  MetricsSnapshot(Map<Stage, LatencyHistogram> histograms, long pagesProcessed,
+                  long pagesSkipped, long pixelsProcessed, long clusteringPoints,
+                  long clustersFound, Map<String, Long> annotationsByType) {
+    Map<Stage, StageSummary> stages = new EnumMap<>(Stage.class);
+    for (Map.Entry<Stage, LatencyHistogram> entry : histograms.entrySet())
+      stages.put(entry.getKey(), new StageSummary(entry.getValue()));
+    this.stages = Collections.unmodifiableMap(stages);
+    this.pagesProcessed = pagesProcessed;
+    this.pagesSkipped = pagesSkipped;
+    this.pixelsProcessed = pixelsProcessed;
+    this.clusteringPoints = clusteringPoints;
+    this.clustersFound = clustersFound;
+    this.annotationsByType =
+            Collections.unmodifiableMap(new TreeMap<>(annotationsByType));
+  }
+
+  public StageSummary getStage(Stage stage) {
+    return stages.get(stage);
+  }
+
+  public Map<Stage, StageSummary> getStages() {
+    return stages;
+  }
+
+  public long getPagesProcessed() {
+    return pagesProcessed;
+  }
+
+  public long getPagesSkipped() {
+    return pagesSkipped;
+  }
+
+  public long getPixelsProcessed() {
+    return pixelsProcessed;
+  }
+
+  public long getClusteringPoints() {
+    return clusteringPoints;
+  }
+
+  public long getClustersFound() {
+    return clustersFound;
+  }
+
+  public Map<String, Long> getAnnotationsByType() {
+    return annotationsByType;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<Stage, StageSummary> entry : stages.entrySet())
+      sb.append(entry.getKey()).append(": ").append(entry.getValue())
+        .append('\n');
+    sb.append("pages=").append(pagesProcessed)
+      .append(" skipped=").append(pagesSkipped)
+      .append(" pixels=").append(pixelsProcessed)
+      .append(" clusteringPoints=").append(clusteringPoints)
+      .append(" clusters=").append(clustersFound)
+      .append(" annotations=").append(annotationsByType);
+    return sb.toString();
+  }
+}
@@ -0,0 +1,173 @@
+package MixedRealityPDF.Diagnostics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * JVM-wide latency and volume metrics for the pipeline stages. Every job
+ * records into the same registry, which is exposed over JMX and through
+ * snapshot(). Recording is lock-free, so it is cheap enough to leave on.
+ */
+public final class PipelineMetrics implements PipelineMetricsMXBean {
+
+  public static final String OBJECT_NAME = "MixedRealityPDF:type=PipelineMetrics";
+
+  private static final PipelineMetrics INSTANCE = new PipelineMetrics();
+
+  static {
+    try {
+      ManagementFactory.getPlatformMBeanServer()
+              .registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+    } catch (JMException e) {
+      // Already registered (e.g. by another class loader). Metrics are still
+      // available through snapshot().
+    }
+  }
+
+  private final Map<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+  private final LongAdder pages = new LongAdder();
+  private final LongAdder skippedPages = new LongAdder();
+  private final LongAdder pixels = new LongAdder();
+  private final LongAdder clusteringPoints = new LongAdder();
+  private final LongAdder clusters = new LongAdder();
+  private final Map<String, LongAdder> annotations = new ConcurrentHashMap<>();
+
+  private PipelineMetrics() {
+    for (Stage stage : Stage.values())
+      stages.put(stage, new LatencyHistogram());
+  }
+
+  public static PipelineMetrics get() {
+    return INSTANCE;
+  }
+
+  /**
+   * @param startNanos value of System.nanoTime() when the stage started
+   */
+  public void recordStage(Stage stage, long startNanos) {
+    stages.get(stage).record(System.nanoTime() - startNanos);
+  }
+
+  public void addPage() {
+    pages.increment();
+  }
+
+  /**
+   * Counts a page the page filter judged clean. It is not counted by
+   * addPage() as well.
+   */
+  public void addSkippedPage() {
+    skippedPages.increment();
+  }
+
+  public void addPixels(long count) {
+    pixels.add(count);
+  }
+
+  public void addClusteringPoints(long count) {
+    clusteringPoints.add(count);
+  }
+
+  public void addClusters(long count) {
+    clusters.add(count);
+  }
+
+  public void addAnnotation(String type) {
+    annotations.computeIfAbsent(type, t -> new LongAdder()).increment();
+  }
+
+  public MetricsSnapshot snapshot() {
+    return new MetricsSnapshot(stages, pages.sum(), skippedPages.sum(),
+            pixels.sum(),
+            clusteringPoints.sum(), clusters.sum(), getAnnotationsByType());
+  }
+
+  private <T> Map<String, T> perStage(Function<LatencyHistogram, T> value) {
+    Map<String, T> values = new TreeMap<>();
+    for (Map.Entry<Stage, LatencyHistogram> entry : stages.entrySet())
+      values.put(entry.getKey().name(), value.apply(entry.getValue()));
+    return values;
+  }
+
+  @Override
+  public Map<String, Long> getStageCounts() {
+    return perStage(LatencyHistogram::getCount);
+  }
+
+  @Override
+  public Map<String, Double> getStageMeanMillis() {
+    return perStage(LatencyHistogram::getMeanMillis);
+  }
+
+  @Override
+  public Map<String, Double> getStageP50Millis() {
+    return perStage(h -> h.getPercentileMillis(0.50));
+  }
+
+  @Override
+  public Map<String, Double> getStageP95Millis() {
+    return perStage(h -> h.getPercentileMillis(0.95));
+  }
+
+  @Override
+  public Map<String, Double> getStageP99Millis() {
+    return perStage(h -> h.getPercentileMillis(0.99));
+  }
+
+  @Override
+  public Map<String, Double> getStageMaxMillis() {
+    return perStage(LatencyHistogram::getMaxMillis);
+  }
+
+  @Override
+  public long getPagesProcessed() {
+    return pages.sum();
+  }
+
+  @Override
+  public long getPagesSkipped() {
+    return skippedPages.sum();
+  }
+
+  @Override
+  public long getPixelsProcessed() {
+    return pixels.sum();
+  }
+
+  @Override
+  public long getClusteringPoints() {
+    return clusteringPoints.sum();
+  }
+
+  @Override
+  public long getClustersFound() {
+    return clusters.sum();
+  }
+
+  @Override
+  public Map<String, Long> getAnnotationsByType() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (Map.Entry<String, LongAdder> entry : annotations.entrySet())
+      counts.put(entry.getKey(), entry.getValue().sum());
+    return counts;
+  }
+
+  @Override
+  public void reset() {
+    for (LatencyHistogram histogram : stages.values())
+      histogram.reset();
+    pages.reset();
+    skippedPages.reset();
+    pixels.reset();
+    clusteringPoints.reset();
+    clusters.reset();
+    annotations.clear();
+  }
+}
@@ -0,0 +1,26 @@
+package MixedRealityPDF.Diagnostics;
+
+import java.util.Map;
+
+/**
+ * JMX view of PipelineMetrics, registered as
+ * MixedRealityPDF:type=PipelineMetrics. Maps are keyed by Stage name or
+ * annotation type.
+ */
+public interface PipelineMetricsMXBean {
+  Map<String, Long> getStageCounts();
+  Map<String, Double> getStageMeanMillis();
+  Map<String, Double> getStageP50Millis();
+  Map<String, Double> getStageP95Millis();
+  Map<String, Double> getStageP99Millis();
+  Map<String, Double> getStageMaxMillis();
+
+  long getPagesProcessed();
+  long getPagesSkipped();
+  long getPixelsProcessed();
+  long getClusteringPoints();
+  long getClustersFound();
+  Map<String, Long> getAnnotationsByType();
+
+  void reset();
+}
@@ -0,0 +1,14 @@
+package MixedRealityPDF.Diagnostics;
+
+/**
+ * The steps every page goes through in PDFPenAndPaper.
+ */
+public enum Stage {
+  RENDER,
+  FILTER,
+  ALIGN,
+  DIFFERENCE,
+  CLUSTER,
+  IDENTIFY,
+  APPLY
+}
@@ -0,0 +1,55 @@
+package MixedRealityPDF.Diagnostics;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Marks one run of a pipeline stage for Java Flight Recorder, so stage
+ * timings can be lined up with GC pauses and allocation in a recording.
+ *
+ * This is the Java 8 version, which records nothing. The multi-release JAR
+ * carries a Java 11 version (src/main/java11) with the same API that emits
+ * a jdk.jfr event named MixedRealityPDF.Stage.
+ */
+public final class StageEvent implements AutoCloseable {
+
+  private static final StageEvent DISABLED = new StageEvent();
+
+  private StageEvent() {}
+
+  /**
+   * Starts timing a stage. End it with end() or close(), e.g. by opening it
+   * in a try-with-resources statement.
+   * @param page index of the page, or -1 if the stage is not about one page
+   */
+  public static StageEvent begin(Stage stage, int page) {
+    return DISABLED;
+  }
+
+  /** Records the class implementing the stage. */
+  public StageEvent strategy(Object implementation) {
+    return this;
+  }
+
+  /** Records the dimensions of the image the stage works on. */
+  public StageEvent image(BufferedImage image) {
+    return this;
+  }
+
+  /** Records how many things (clusters, differing pixels...) the stage produced. */
+  public StageEvent count(long count) {
+    return this;
+  }
+
+  /**
+   * Adds to the point count of the innermost stage open on this thread. Lets
+   * a stage implementation report its work without access to the event.
+   */
+  public static void addPoints(long points) {}
+
+  /** Ends the stage. Does nothing if it has already ended. */
+  public void end() {}
+
+  /** Same as end(). */
+  @Override
+  public void close() {}
+}
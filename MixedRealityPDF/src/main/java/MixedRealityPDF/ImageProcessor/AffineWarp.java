@@ -0,0 +1,107 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.image.BufferedImage;
+
+/**
+ * Resamples an image through an affine transform in a single pass, in parallel over bands of rows (see RowBands).
+ * Several transforms that would each take a pass of Graphics2D.drawImage, and each blur the image a little more, are
+ * composed into one first.
+ *
+ * Every pixel of the output is worked out from the point of the input its centre comes from, so no output pixel is
+ * left unset and the output needn't be cleared; parts of the output that come from outside the input are set to the
+ * background. A transform that flattens the image (e.g. a scale of 0) leaves nothing of it, as with Graphics2D, and the
+ * output is all background. Immutable.
+ */
+public final class AffineWarp {
+
+  public enum Interpolation {
+    // The input pixel the point falls in, as Graphics2D draws by default.
+    NEAREST_NEIGHBOUR,
+    // The four input pixels around the point, weighted by how near they are. Outside the input counts as background.
+    BILINEAR
+  }
+
+  // Takes points of the output to points of the input, or null if the transform flattens the image.
+  private final AffineTransform inverse;
+  private final Interpolation interpolation;
+
+  /**
+   * @param transform takes points of the input to points of the output, e.g. several transforms composed with
+   *                  AffineTransform.concatenate or preConcatenate
+   */
+  public AffineWarp(AffineTransform transform, Interpolation interpolation) {
+    this.inverse = inverse(transform);
+    this.interpolation = interpolation;
+  }
+
+  private static AffineTransform inverse(AffineTransform transform) {
+    double determinant = transform.getDeterminant();
+    // Also catches a scale worked out as infinite or NaN, e.g. between bounding boxes of no width.
+    if (Double.isNaN(determinant) || Double.isInfinite(determinant))
+      return null;
+    try {
+      return transform.createInverse();
+    } catch (NoninvertibleTransformException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @param type       the output's image type
+   * @param background ARGB value of the parts of the output that come from outside `input'
+   * @return A width x height image of `input' warped, leased from PageBufferPool.shared().
+   */
+  public BufferedImage apply(BufferedImage input, int width, int height, int type, int background) {
+    if (inverse == null)
+      return PageBufferPool.shared().lease(width, height, type, background);
+    PixelBuffer in = PixelBuffer.of(input);
+    PixelBuffer out = PixelBuffer.of(PageBufferPool.shared().lease(width, height, type));
+    int inWidth = in.getWidth(), inHeight = in.getHeight();
+    double[] m = new double[6];
+    inverse.getMatrix(m);
+    RowBands.forEach(height, (from, to) -> {
+      for (int y = from; y < to; y++) {
+        double cy = y + 0.5;
+        for (int x = 0, i = y * width; x < width; x++, i++) {
+          double cx = x + 0.5;
+          // Where the centre of output pixel (x, y) comes from.
+          double sx = m[0] * cx + m[2] * cy + m[4];
+          double sy = m[1] * cx + m[3] * cy + m[5];
+          out.set(i, interpolation == Interpolation.NEAREST_NEIGHBOUR
+                  ? nearest(in, inWidth, inHeight, sx, sy, background)
+                  : bilinear(in, inWidth, inHeight, sx, sy, background));
+        }
+      }
+    });
+    return out.toImage();
+  }
+
+  private static int nearest(PixelBuffer in, int width, int height, double sx, double sy, int background) {
+    return sample(in, width, height, (int) Math.floor(sx), (int) Math.floor(sy), background);
+  }
+
+  private static int bilinear(PixelBuffer in, int width, int height, double sx, double sy, int background) {
+    // Pixel centres are at half-integers, so the four around the point start at the one up and to the left of it.
+    double fx = sx - 0.5, fy = sy - 0.5;
+    int x0 = (int) Math.floor(fx), y0 = (int) Math.floor(fy);
+    if (x0 < -1 || y0 < -1 || x0 >= width || y0 >= height)
+      return background;
+    double wx = fx - x0, wy = fy - y0;
+    int p00 = sample(in, width, height, x0, y0, background), p10 = sample(in, width, height, x0 + 1, y0, background);
+    int p01 = sample(in, width, height, x0, y0 + 1, background);
+    int p11 = sample(in, width, height, x0 + 1, y0 + 1, background);
+    int argb = 0;
+    for (int shift = 0; shift < 32; shift += 8) {
+      double top = ((p00 >>> shift) & 0xFF) * (1 - wx) + ((p10 >>> shift) & 0xFF) * wx;
+      double bottom = ((p01 >>> shift) & 0xFF) * (1 - wx) + ((p11 >>> shift) & 0xFF) * wx;
+      argb |= ((int) (top * (1 - wy) + bottom * wy + 0.5)) << shift;
+    }
+    return argb;
+  }
+
+  private static int sample(PixelBuffer in, int width, int height, int x, int y, int background) {
+    return x >= 0 && y >= 0 && x < width && y < height ? in.get(x, y) : background;
+  }
+}
@@ -8,11 +8,19 @@ import java.io.File;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.UnaryOperator;
 
 import MixedRealityPDF.AnnotationProcessor.Annotations.Text;
+import MixedRealityPDF.ImageProcessor.AffineWarp;
+import MixedRealityPDF.ImageProcessor.Binarization.GlobalBinarizer;
 import MixedRealityPDF.ImageProcessor.ColourRemoval.ColorExtractor;
+import MixedRealityPDF.ImageProcessor.BitMask;
 import MixedRealityPDF.ImageProcessor.IAlignment;
-import MixedRealityPDF.ImageProcessor.Stats;
+import MixedRealityPDF.ImageProcessor.IBinarizer;
+import MixedRealityPDF.ImageProcessor.InkMap;
+import MixedRealityPDF.ImageProcessor.PageBufferPool;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+import MixedRealityPDF.ImageProcessor.RowBands;
 import javafx.util.Pair;
 
 public class ImageWrapper implements IAlignment {
@@ -32,7 +40,8 @@ public class ImageWrapper implements IAlignment {
     save(modifiedBufferedImage, baseOutputDirectory+"modifiedBufferedImage.png");
 
 
-    BufferedImage resizedModifiedBufferedImage = ImageWrapper.scaleToFirstArgument(originalBufferedImage, modifiedBufferedImage);
+    BufferedImage resizedModifiedBufferedImage = ImageWrapper.scaleToFirstArgument(originalBufferedImage.getWidth(),
+            originalBufferedImage.getHeight(), modifiedBufferedImage);
 
     save(resizedModifiedBufferedImage, baseOutputDirectory+"resizedModifiedBufferedImage.png");
 
@@ -72,8 +81,33 @@ public class ImageWrapper implements IAlignment {
 
 
 
+  // Decides which pixels of the original and of the scans are black.
+  private IBinarizer binarizer = GlobalBinarizer.DEFAULT;
+  // How the scan is resampled once it has been measured.
+  private AffineWarp.Interpolation interpolation = AffineWarp.Interpolation.NEAREST_NEIGHBOUR;
+
   public ImageWrapper(){}
 
+  /**
+   * @param binarizer
+   * Alignment finding black pixels with `binarizer' rather than the usual global threshold, e.g. an adaptive one for
+   * unevenly lit scans.
+   */
+  public ImageWrapper(IBinarizer binarizer){
+    this.binarizer = binarizer;
+  }
+
+  /**
+   * @param binarizer
+   * @param interpolation
+   * Same as ImageWrapper(binarizer), resampling the scan with `interpolation', e.g. BILINEAR for smoother strokes at
+   * the cost of a little more time.
+   */
+  public ImageWrapper(IBinarizer binarizer, AffineWarp.Interpolation interpolation){
+    this.binarizer = binarizer;
+    this.interpolation = interpolation;
+  }
+
   /**
    *
    * @param original
@@ -84,61 +118,94 @@ public class ImageWrapper implements IAlignment {
    */
   @Override
   public BufferedImage align(BufferedImage original, BufferedImage modifiedBeforeARCorrect) {
+    return prepare(original).apply(modifiedBeforeARCorrect);
+  }
 
-    BufferedImage modified = ImageWrapper.scaleToFirstArgument(original, modifiedBeforeARCorrect);
+  /**
+   *
+   * @param original
+   * @return A function aligning a scan with `original'. The ink masks and text bounding box of `original' are
+   * computed once here rather than for every scan. Only the bounding box and size of `original' are kept.
+   */
+  @Override
+  public UnaryOperator<BufferedImage> prepare(BufferedImage original) {
+    TextBoundingBox originalBB = (new ImageWrapper(original, binarizer)).boundingBox();
+    int width = original.getWidth(), height = original.getHeight();
+    return modified -> align(width, height, originalBB, modified, binarizer, interpolation);
+  }
 
+  /**
+   *
+   * @param original
+   * @param analysis
+   * @return Same as prepare(original), taking the bounding box from an analysis of `original' made earlier.
+   */
+  @Override
+  public UnaryOperator<BufferedImage> prepare(BufferedImage original, PageAnalysis analysis) {
+    // Analyses are made with the default binarizer.
+    if (!GlobalBinarizer.DEFAULT.equals(binarizer))
+      return prepare(original);
+    TextBoundingBox originalBB = analysis.getTextBoundingBox();
+    int width = original.getWidth(), height = original.getHeight();
+    return modified -> align(width, height, originalBB, modified, binarizer, interpolation);
+  }
 
-    ImageWrapper originalImageWrapper = new ImageWrapper(original);
+  private static BufferedImage align(int originalWidth, int originalHeight, TextBoundingBox originalBB,
+                                     BufferedImage modifiedBeforeARCorrect, IBinarizer binarizer,
+                                     AffineWarp.Interpolation interpolation) {
 
+    // The scan is measured at the size of the original, as the bounding boxes have to be compared.
+    BufferedImage modified = ImageWrapper.scaleToFirstArgument(originalWidth, originalHeight, modifiedBeforeARCorrect);
 
-    ImageWrapper modifiedImageWrapper = new ImageWrapper(modified);
 
+    ImageWrapper modifiedImageWrapper = new ImageWrapper(modified, binarizer);
 
-    // Need to extract just the black component to find the bounding box of the black text
-    BufferedImage blackComponentOfModified = modifiedImageWrapper.getImage(true, false);
 
-    // Perform alignment based on the original and the black component of the modified image
-    TextBoundingBox originalBB = originalImageWrapper.boundingBox();
-    TextBoundingBox scanBB = (new ImageWrapper(blackComponentOfModified)).boundingBox();
+    // Perform alignment based on the original and the black component of the modified image. The wrapper's ink map
+    // already says which pixels are black, so there is no need to draw the black component out first.
+    TextBoundingBox scanBB = modifiedImageWrapper.boundingBox();
 
-    // Apply the transformation to the image without any colour modifications.
-    BufferedImage correctlyAlignedImage = correctAlignment(scanBB, originalBB, modifiedImageWrapper.bufferedImage);
+    // The resized scan was leased by scaleToFirstArgument and isn't needed any more.
+    PageBufferPool.shared().release(modified);
 
-    return correctlyAlignedImage;
+    // Apply the transformation to the image without any colour modifications. Resizing, translation and scaling are
+    // done together, straight from the scan as it came, rather than resampling the resized scan twice more.
+    AffineTransform transform = correctAlignment(scanBB, originalBB);
+    transform.concatenate(resizeToFirstArgument(originalWidth, originalHeight, modifiedBeforeARCorrect));
+    return new AffineWarp(transform, interpolation).apply(modifiedBeforeARCorrect, originalWidth, originalHeight,
+            BufferedImage.TYPE_INT_RGB, Color.WHITE.getRGB());
   }
 
 
   BufferedImage bufferedImage;
   int originalHeight, originalWidth;
 
-  // Array representations of the pixels in the input image with which an ImageWrapper
-  // instance is constructed. An entry is `true' iff that pixel (x, y) is considered a `black' pixel or a `coloured' pixel,
-  // respectively.
-  boolean[][] blackPixelArray;
-  boolean[][] colouredPixelArray;
+  // Which pixels of the input image with which an ImageWrapper instance is constructed are considered `black' pixels
+  // and which `coloured' pixels, with the number of black pixels in each row.
+  InkMap ink;
 
 
   /**
    * @param bufferedImage
-   * Take a BufferedImage instance and initialise the blackPixelArray and colouredPixelArray fields.
+   * Take a BufferedImage instance and classify its pixels into the ink field, in one pass.
    */
-  private ImageWrapper(BufferedImage bufferedImage) {
+  ImageWrapper(BufferedImage bufferedImage) {
+    this(bufferedImage, GlobalBinarizer.DEFAULT);
+  }
+
+  /**
+   * @param bufferedImage
+   * @param binarizer
+   * Same as ImageWrapper(bufferedImage), with `binarizer' deciding which pixels are black.
+   */
+  ImageWrapper(BufferedImage bufferedImage, IBinarizer binarizer) {
 
     this.bufferedImage = bufferedImage;
 
     originalHeight = this.bufferedImage.getHeight();
     originalWidth = this.bufferedImage.getWidth();
 
-    blackPixelArray = new boolean[originalWidth][originalHeight];
-    colouredPixelArray = new boolean[originalWidth][originalHeight];
-
-    for (int currXOffset = 0; currXOffset  < originalWidth; currXOffset++) {
-      for (int currYOffset = 0; currYOffset< originalHeight; currYOffset++) {
-
-        blackPixelArray[currXOffset][currYOffset] = isABlackPixel(this.bufferedImage, currXOffset, currYOffset, 0.2);
-        colouredPixelArray[currXOffset][currYOffset] = isAColouredPixel(this.bufferedImage, currXOffset, currYOffset, 0.1);
-      }
-    }
+    ink = InkMap.of(PixelBuffer.of(this.bufferedImage), binarizer, InkMap.COLOUR_THRESHOLD);
   }
 
   /**
@@ -151,79 +218,41 @@ public class ImageWrapper implements IAlignment {
    * If justBlack == true && justColour == true then return the original image.
    */
   private BufferedImage getImage(boolean justBlack, boolean justColour) {
-    BufferedImage outputBufferedImage  = new BufferedImage(bufferedImage.getWidth(), bufferedImage.getHeight(), 1+bufferedImage.getType());
-    for (int x = 0; x < originalWidth; x++) {
-      for (int y = 0; y < originalHeight; y++) {
-        if (justColour && !justBlack) {
-          if (colouredPixelArray[x][y]) {
-            outputBufferedImage.setRGB(x, y, bufferedImage.getRGB(x, y));
-          } else {
-            outputBufferedImage.setRGB(x, y, Color.WHITE.getRGB());
-          }
-        } else if (justBlack && !justColour) {
-          if (blackPixelArray[x][y]){
-            outputBufferedImage.setRGB(x, y, Color.BLACK.getRGB());
+    PixelBuffer input = PixelBuffer.of(bufferedImage);
+    // Every pixel is set below, so the image needn't be cleared.
+    PixelBuffer output = PixelBuffer.of(PageBufferPool.shared().lease(bufferedImage.getWidth(),
+            bufferedImage.getHeight(), 1+bufferedImage.getType()));
+    BitMask blackPixels = ink.getBlack(), colouredPixels = ink.getColoured();
+    int white = Color.WHITE.getRGB(), black = Color.BLACK.getRGB();
+    RowBands.forEach(originalHeight, (from, to) -> {
+      for (int y = from; y < to; y++) {
+        for (int x = 0; x < originalWidth; x++) {
+          if (justColour && !justBlack) {
+            if (colouredPixels.get(x, y)) {
+              output.set(x, y, input.get(x, y));
+            } else {
+              output.set(x, y, white);
+            }
+          } else if (justBlack && !justColour) {
+            if (blackPixels.get(x, y)){
+              output.set(x, y, black);
+            } else {
+              output.set(x, y, white);
+            }
           } else {
-            outputBufferedImage.setRGB(x, y, Color.WHITE.getRGB());
-          }
-        } else {
-          if (colouredPixelArray[x][y]) {
-            outputBufferedImage.setRGB(x, y, bufferedImage.getRGB(x, y));
-          }
-          else if (blackPixelArray[x][y]){
-            outputBufferedImage.setRGB(x, y, Color.BLACK.getRGB());
-          } else {
-            outputBufferedImage.setRGB(x, y, Color.WHITE.getRGB());
+            if (colouredPixels.get(x, y)) {
+              output.set(x, y, input.get(x, y));
+            }
+            else if (blackPixels.get(x, y)){
+              output.set(x, y, black);
+            } else {
+              output.set(x, y, white);
+            }
           }
         }
       }
-    }
-    return outputBufferedImage;
-  }
-
-
-  /**
-   *
-   * @param bufferedImage
-   * @param x
-   * @param y
-   * @param threshold
-   * @return true iff the pixel at (x, y) is considered to be a black pixel. A higher threshold value makes the test
-   * less strict -- so as threshold is made larger, more grey pixels get accepted as black.
-   */
-  private static boolean isABlackPixel(BufferedImage bufferedImage, int x, int y, double threshold) {
-
-    Color c = new Color(bufferedImage.getRGB(x, y));
-    int sumlengthsquared = (int) (Math.pow(c.getRed(), 2) + Math.pow(c.getGreen(), 2) + Math.pow(c.getBlue(), 2));
-
-    // (255 ^2) * 3  is the max value of sumlengthsquared (white + white)
-    if (sumlengthsquared > threshold * Math.pow(255 , 2) * 3) {
-      // It was deemed to be a white pixel
-      return false;
-    } else if (sumlengthsquared < threshold * Math.pow(255, 2) * 3){
-      // Deemed to be a black pixel according to the the threshold
-      return true;
-    } else {
-      // Lies between the black and white threshold
-      // Default to a white pixel (as the background is assumed white)
-      return false;
-    }
-  }
-
-  /**
-   *
-   * @param bufferedImage
-   * @param x
-   * @param y
-   * @param threshold
-   * @return true iff the pixel at (x, y) in bufferedImage is considered to be a coloured pixel. A larger threshold makes the test
-   * more strict -- a larger threshold requires the pixel to be more colourful (i.e. have a larger standard deviation among its
-   * RGB components) to be considered as a coloured pixel.
-   */
-  private static boolean isAColouredPixel(BufferedImage bufferedImage, int x, int y, double threshold) {
-    Color c = new Color(bufferedImage.getRGB(x, y));
-    double stdev = Stats.getStdDev(new double[]{c.getRed(), c.getGreen(), c.getBlue()})/255;
-    return (stdev > threshold);
+    });
+    return output.toImage();
   }
 
 
@@ -234,33 +263,24 @@ public class ImageWrapper implements IAlignment {
    */
   private List<LineSegment>  xScans() {
 
-    List<LineSegment> segments = new LinkedList<>();
-
-    for (int y = 0; y < originalHeight; y++) {
-
-      boolean seenBlackPixel = false;
-
-      Integer startx = null, starty = null, endx = null, endy = null;
-
-      for (int x = 0; x < originalWidth; x++) {
-        if (!seenBlackPixel && blackPixelArray[x][y]) {
-          seenBlackPixel = true;
-          startx = x;
-          starty = y;
-          endx = x;
-          endy = y;
-        } else if (seenBlackPixel && blackPixelArray[x][y]) {
-          assert (y == endy);
-          if (x > endx) {
-            endx = x;
-          }
+    int[] blackPerRow = ink.getBlackPerRow();
+    // Each band of rows makes its own list; the lists are joined in row order.
+    return RowBands.reduce(originalHeight, (from, to) -> {
+      List<LineSegment> segments = new LinkedList<>();
+      for (int y = from; y < to; y++) {
+
+        if (blackPerRow[y] > 0) {
+          // The leftmost and rightmost black pixels of the row, found a word of the mask at a time.
+          int startx = ink.getBlack().firstInRow(y);
+          int endx = ink.getBlack().lastInRow(y);
+          segments.add(new LineSegment(new Coordinate(startx, y), new Coordinate(endx, y)));
         }
       }
-      if (seenBlackPixel) {
-        segments.add(new LineSegment(new Coordinate(startx, starty), new Coordinate(endx, endy)));
-      }
-    }
-    return segments;
+      return segments;
+    }, (upper, lower) -> {
+      upper.addAll(lower);
+      return upper;
+    });
   }
 
 
@@ -270,7 +290,8 @@ public class ImageWrapper implements IAlignment {
    */
   private BufferedImage getWithBoundingBox() {
 
-    BufferedImage underlyingImage = ImageWrapper.scaleAboutCentre(0,0, 1.0, 1.0, getImage(false, false));
+    // getImage makes a new image, so the box can be drawn straight onto it.
+    BufferedImage underlyingImage = getImage(false, false);
 
     TextBoundingBox boundingBoxCoordinates = boundingBox();
     return overlayBB(underlyingImage, boundingBoxCoordinates);
@@ -282,7 +303,7 @@ public class ImageWrapper implements IAlignment {
    *
    * @return A TextBoundingBox instance containing the parameters of the bounding box of the text in the image.
    */
-  private TextBoundingBox boundingBox() {
+  TextBoundingBox boundingBox() {
 
     Coordinate possA = null, possB = null, possC = null, possD = null;
 
@@ -397,90 +418,17 @@ public class ImageWrapper implements IAlignment {
   }
 
 
-  /**
-   *
-   * @param dx
-   * @param dy
-   * @param input
-   * @return Shift every pixel in `input' from (x, y) to (x + dx, y + dy).
-   */
-  private static BufferedImage translate(int dx, int dy, BufferedImage input) {
-    AffineTransform at = new AffineTransform();
-    at.translate(dx, dy);
-
-
-
-    BufferedImage outputImage = new BufferedImage(input.getWidth(), input.getHeight(), input.getType());
-
-
-    for (int x = 0; x < outputImage.getWidth() ; x++) {
-      for (int y = 0; y < outputImage.getHeight(); y++) {
-        outputImage.setRGB(x, y, Color.WHITE.getRGB());
-      }
-    }
-
-
-    Graphics2D graphics2D = outputImage.createGraphics();
-    graphics2D.setTransform(at);
-
-    graphics2D.drawImage(input, 0, 0, null);
-    graphics2D.dispose();
-    return outputImage;
-  }
-
-
-  /**
-   *
-   * @param x0
-   * @param y0
-   * @param kx
-   * @param ky
-   * @param inputImage
-   * @return Scale the `inputImage' by kx, ky in the x- and y- directions respectively, taking (x0, y0) as the centre point.
-   */
-  private static BufferedImage scaleAboutCentre(int x0, int y0, double kx, double ky, BufferedImage inputImage) {
-    AffineTransform at = new AffineTransform();
-
-    at.translate(x0, y0);
-    at.scale(kx, ky);
-    at.translate(-x0, -y0);
-
-
-    BufferedImage outputImage = new BufferedImage(inputImage.getWidth(), inputImage.getHeight(), inputImage.getType());
-
-    for (int x = 0; x < outputImage.getWidth() ; x++) {
-      for (int y = 0; y < outputImage.getHeight(); y++) {
-        outputImage.setRGB(x, y, Color.WHITE.getRGB());
-      }
-    }
-
-    Graphics2D graphics2D = outputImage.createGraphics();
-    graphics2D.setTransform(at);
-
-    graphics2D.drawImage(inputImage, 0, 0, null);
-    graphics2D.dispose();
-
-    return outputImage;
-  }
-
-
   /**
    *
    * @param bbscan
    * @param bborig
-   * @param inputImage
-   * @return Return an image of the same dimensions as inputImage but with the pixels moved around such that
-   * the bounding box of the text now has coordinates given by `bborig'.
+   * @return A transform moving the points of an image with text bounding box `bbscan' such that the bounding box of
+   * the text then has coordinates given by `bborig': a translation by findTranslation, followed by a scaling by
+   * findScaling about the top left corner of `bborig'.
    */
-  private static BufferedImage correctAlignment(TextBoundingBox bbscan, TextBoundingBox bborig, BufferedImage inputImage) {
+  private static AffineTransform correctAlignment(TextBoundingBox bbscan, TextBoundingBox bborig) {
     Coordinate translation = findTranslation(bbscan, bborig);
     Pair<Double, Double> scales = ImageWrapper.findScaling(bbscan, bborig);
-    BufferedImage translatedImage = translate(translation.x, translation.y, inputImage);
-
-
-    TextBoundingBox tbbOfTranslatedImage = (new ImageWrapper(translatedImage)).boundingBox();
-
-    System.out.println("tbbOfTranslatedImage = " + tbbOfTranslatedImage);
 
     double kx = scales.getKey();
     double ky = scales.getValue();
@@ -488,9 +436,13 @@ public class ImageWrapper implements IAlignment {
 
     System.out.println("bborig.coordA = " + bborig.coordA);
 
-    BufferedImage scaledTranslatedImage = scaleAboutCentre(bborig.coordA.x, bborig.coordA.y, kx, ky, translatedImage);
-
-    return scaledTranslatedImage;
+    // Transforms are concatenated last applied first.
+    AffineTransform at = new AffineTransform();
+    at.translate(bborig.coordA.x, bborig.coordA.y);
+    at.scale(kx, ky);
+    at.translate(-bborig.coordA.x, -bborig.coordA.y);
+    at.translate(translation.x, translation.y);
+    return at;
 
   }
 
@@ -502,42 +454,34 @@ public class ImageWrapper implements IAlignment {
 
   /**
    *
-   * @param original
+   * @param width
+   * @param height
    * @param modified
-   * @return A BufferedImage instance with the same content as `modified' but scaled such that the dimensions of the image
-   * are the same as that of `original'.
+   * @return A TYPE_INT_RGB BufferedImage instance with the same content as `modified' but scaled such that the
+   * dimensions of the image are width x height, those of the original. The type doesn't follow the original's, so that
+   * an original rendered in grey doesn't take the colour out of the scan.
    */
-  private static BufferedImage scaleToFirstArgument(BufferedImage original, BufferedImage modified) {
+  private static BufferedImage scaleToFirstArgument(int width, int height, BufferedImage modified) {
+    return new AffineWarp(resizeToFirstArgument(width, height, modified), AffineWarp.Interpolation.NEAREST_NEIGHBOUR)
+            .apply(modified, width, height, BufferedImage.TYPE_INT_RGB, Color.WHITE.getRGB());
+  }
 
-    double kx = original.getWidth()/(double)modified.getWidth();
-    double ky = original.getHeight()/(double)modified.getHeight();
+  /**
+   *
+   * @param width
+   * @param height
+   * @param modified
+   * @return The scaling taking `modified' to width x height.
+   */
+  private static AffineTransform resizeToFirstArgument(int width, int height, BufferedImage modified) {
+
+    double kx = width/(double)modified.getWidth();
+    double ky = height/(double)modified.getHeight();
 
 
     System.out.println("kx = " + kx);
     System.out.println("ky = " + ky);
 
-    AffineTransform at = new AffineTransform();
-    at.scale(kx, ky);
-    BufferedImage scaledModifiedImage = new BufferedImage(original.getWidth(), original.getHeight(), original.getType());
-
-
-    for (int x = 0; x < scaledModifiedImage.getWidth() ; x++) {
-      for (int y = 0; y < scaledModifiedImage.getHeight(); y++) {
-        scaledModifiedImage.setRGB(x, y, Color.WHITE.getRGB());
-      }
-    }
-
-    for (int x = 0; x < scaledModifiedImage.getWidth(); x++) {
-      for (int y = 0; y < scaledModifiedImage.getHeight(); y++) {
-        scaledModifiedImage.setRGB(x, y, Color.WHITE.getRGB());
-      }
-    }
-
-    Graphics2D graphics2D = scaledModifiedImage.createGraphics();
-    graphics2D.setTransform(at);
-    graphics2D.drawImage(modified, 0, 0, null);
-    graphics2D.dispose();
-
-    return scaledModifiedImage;
+    return AffineTransform.getScaleInstance(kx, ky);
   }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package MixedRealityPDF.ImageProcessor.Alignment;
+
+import MixedRealityPDF.ImageProcessor.BitMask;
+import MixedRealityPDF.ImageProcessor.InkMap;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * What ImageWrapper works out about a page before it can align anything with it: which pixels are black, which are
+ * coloured and where the text's bounding box is. Depends only on the page image, so it can be kept alongside the image
+ * and reused for every scan of that page. Immutable.
+ */
+public final class PageAnalysis {
+
+    private final int width, height;
+    private final BitMask black;
+    private final BitMask coloured;
+    private final InkMap ink;
+    private final TextBoundingBox textBoundingBox;
+
+    private PageAnalysis(int width, int height, InkMap ink, TextBoundingBox textBoundingBox) {
+        this.width = width;
+        this.height = height;
+        this.black = ink.getBlack();
+        this.coloured = ink.getColoured();
+        this.ink = ink;
+        this.textBoundingBox = textBoundingBox;
+    }
+
+    public static PageAnalysis of(BufferedImage page) {
+        ImageWrapper wrapper = new ImageWrapper(page);
+        TextBoundingBox box = wrapper.boundingBox();
+        return new PageAnalysis(wrapper.originalWidth, wrapper.originalHeight, wrapper.ink,
+                box.coordA == null ? null : box);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isBlack(int x, int y) {
+        return black.get(x, y);
+    }
+
+    public boolean isColoured(int x, int y) {
+        return coloured.get(x, y);
+    }
+
+    /**
+     * @return A copy of the mask of black pixels.
+     */
+    public BitMask getBlackMask() {
+        return black.copy();
+    }
+
+    /**
+     * @return A copy of the mask of coloured pixels.
+     */
+    public BitMask getColouredMask() {
+        return coloured.copy();
+    }
+
+    /**
+     * @return The page's ink, shared rather than copied, so it must not be changed.
+     */
+    public InkMap getInk() {
+        return ink;
+    }
+
+    /**
+     * @return The bounding box of the page's text, or null if the page has no text.
+     */
+    public TextBoundingBox getTextBoundingBox() {
+        return textBoundingBox;
+    }
+
+    /**
+     * @return Number of bytes write() will put in a buffer.
+     */
+    public int serializedSize() {
+        return serializedSize(width, height);
+    }
+
+    /**
+     * @return Number of bytes write() puts in a buffer for the analysis of a width x height page.
+     */
+    public static int serializedSize(int width, int height) {
+        return 4 * 2 + 8 * 4 + 2 * 8 * ((width + 63) / 64) * height;
+    }
+
+    /**
+     * Writes this analysis in the form read() expects.
+     */
+    public void write(ByteBuffer out) {
+        long[] blackWords = black.toLongArray();
+        long[] colouredWords = coloured.toLongArray();
+        out.putInt(width).putInt(height);
+        // A page without any text has no bounding box; its corners are written as -1.
+        Coordinate[] corners = textBoundingBox == null ? new Coordinate[4] : new Coordinate[]{
+                textBoundingBox.coordA, textBoundingBox.coordB, textBoundingBox.coordC, textBoundingBox.coordD};
+        for (Coordinate c : corners) {
+            out.putInt(c == null ? -1 : c.x).putInt(c == null ? -1 : c.y);
+        }
+        out.asLongBuffer().put(blackWords).put(colouredWords);
+        out.position(out.position() + 8 * (blackWords.length + colouredWords.length));
+    }
+
+    /**
+     * Same as read(in), for the analysis of a page known to be width x height.
+     * @throws IOException if `in' holds the analysis of a page of another size, and so isn't the analysis wanted
+     */
+    public static PageAnalysis read(ByteBuffer in, int width, int height) throws IOException {
+        int position = in.position();
+        if (in.getInt(position) != width || in.getInt(position + 4) != height) {
+            throw new IOException("Analysis is of a " + in.getInt(position) + "x" + in.getInt(position + 4)
+                    + " page, not " + width + "x" + height);
+        }
+        return read(in);
+    }
+
+    public static PageAnalysis read(ByteBuffer in) {
+        int width = in.getInt(), height = in.getInt();
+        long[] blackWords = new long[((width + 63) / 64) * height];
+        long[] colouredWords = new long[blackWords.length];
+        Coordinate[] corners = new Coordinate[4];
+        boolean complete = true;
+        for (int i = 0; i < corners.length; i++) {
+            int x = in.getInt(), y = in.getInt();
+            corners[i] = x < 0 ? null : new Coordinate(x, y);
+            complete &= corners[i] != null;
+        }
+        in.asLongBuffer().get(blackWords).get(colouredWords);
+        in.position(in.position() + 8 * (blackWords.length + colouredWords.length));
+        TextBoundingBox box = complete ? new TextBoundingBox(corners[0], corners[1], corners[2], corners[3]) : null;
+        InkMap ink = InkMap.of(BitMask.fromLongArray(width, height, blackWords),
+                BitMask.fromLongArray(width, height, colouredWords));
+        return new PageAnalysis(width, height, ink, box);
+    }
+}
@@ -0,0 +1,63 @@
+package MixedRealityPDF.ImageProcessor.Binarization;
+
+import MixedRealityPDF.ImageProcessor.BitMask;
+import MixedRealityPDF.ImageProcessor.IBinarizer;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+import MixedRealityPDF.ImageProcessor.RowBands;
+
+/**
+ * Thresholds every pixel against the grey levels of the square window around it, so that shadows and uneven lighting
+ * of a scan move the threshold with them. The window's statistics come from an IntegralImage, so each pixel costs the
+ * same however large the window. Near the edges of the page the window is cut down to the part inside the page.
+ */
+public abstract class AdaptiveBinarizer implements IBinarizer {
+
+    private final int window;
+
+    /**
+     * @param window    side of the window, in pixels. Odd, so that it is centred on the pixel.
+     */
+    protected AdaptiveBinarizer(int window) {
+        if (window < 1 || window % 2 == 0 || (long) window * window > IntegralImage.MAX_AREA)
+            throw new IllegalArgumentException("Window must be odd and at most "
+                    + (int) Math.sqrt(IntegralImage.MAX_AREA) + " pixels across: " + window);
+        this.window = window;
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * @param grey          grey level of the pixel, from 0 (black) to 255 (white)
+     * @param area          number of pixels in its window
+     * @param sum           sum of the grey levels in the window
+     * @param sumOfSquares  sum of their squares, if usesVariance()
+     * @return              true iff the pixel is ink
+     */
+    protected abstract boolean isInk(int grey, int area, long sum, long sumOfSquares);
+
+    // Whether isInk looks at sumOfSquares. If not, that table isn't made.
+    protected abstract boolean usesVariance();
+
+    @Override
+    public BitMask binarize(PixelBuffer pixels) {
+        int width = pixels.getWidth(), height = pixels.getHeight(), half = window / 2;
+        boolean variance = usesVariance();
+        IntegralImage integral = IntegralImage.of(pixels, variance);
+        BitMask ink = new BitMask(width, height);
+        RowBands.forEach(height, (from, to) -> {
+            for (int y = from, i = from * width; y < to; y++) {
+                int y0 = Math.max(0, y - half), y1 = Math.min(height, y + half + 1);
+                for (int x = 0; x < width; x++, i++) {
+                    int x0 = Math.max(0, x - half), x1 = Math.min(width, x + half + 1);
+                    long sum = integral.sum(x0, y0, x1, y1);
+                    long sumOfSquares = variance ? integral.sumOfSquares(x0, y0, x1, y1) : 0;
+                    if (isInk(IntegralImage.grey(pixels.get(i)), (x1 - x0) * (y1 - y0), sum, sumOfSquares))
+                        ink.set(x, y);
+                }
+            }
+        });
+        return ink;
+    }
+}
@@ -0,0 +1,35 @@
+package MixedRealityPDF.ImageProcessor.Binarization;
+
+/**
+ * Bradley and Roth's threshold: a pixel is ink iff it is darker than the mean of its window by more than a fixed
+ * fraction. Cheaper than Sauvola, needing only the sum of the window, but faint marks in large blank areas can pass.
+ */
+public class BradleyBinarizer extends AdaptiveBinarizer {
+
+    private final double t;
+
+    public BradleyBinarizer() {
+        this(127, 0.15);
+    }
+
+    /**
+     * @param window    side of the window in pixels, odd
+     * @param t         fraction, from 0 to 1, by which a pixel must be darker than its window's mean to be ink
+     */
+    public BradleyBinarizer(int window, double t) {
+        super(window);
+        if (t < 0 || t > 1)
+            throw new IllegalArgumentException("t must be between 0 and 1: " + t);
+        this.t = t;
+    }
+
+    @Override
+    protected boolean isInk(int grey, int area, long sum, long sumOfSquares) {
+        return (double) grey * area < sum * (1 - t);
+    }
+
+    @Override
+    protected boolean usesVariance() {
+        return false;
+    }
+}
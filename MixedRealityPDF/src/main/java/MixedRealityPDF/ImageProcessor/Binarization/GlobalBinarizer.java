@@ -0,0 +1,50 @@
+package MixedRealityPDF.ImageProcessor.Binarization;
+
+import MixedRealityPDF.ImageProcessor.BitMask;
+import MixedRealityPDF.ImageProcessor.IBinarizer;
+import MixedRealityPDF.ImageProcessor.InkMap;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+
+/**
+ * The same threshold for every pixel of the page: a pixel is ink iff its channels, as a vector, are shorter than
+ * sqrt(threshold) times white's. This is the test InkMap has always used, and works on evenly lit pages such as
+ * renders of the original. On an unevenly lit scan whole shadowed regions fall below it.
+ */
+public class GlobalBinarizer implements IBinarizer {
+
+    // The binarizer used when none is given.
+    public static final GlobalBinarizer DEFAULT = new GlobalBinarizer(InkMap.BLACK_THRESHOLD);
+
+    private final double threshold;
+    // r*r + g*g + b*b is a whole number, so being below the limit is the same as being below the limit rounded up.
+    private final int below;
+
+    public GlobalBinarizer(double threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("Threshold must not be negative: " + threshold);
+        this.threshold = threshold;
+        this.below = (int) Math.min(Integer.MAX_VALUE, Math.ceil(threshold * Math.pow(255, 2) * 3));
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    @Override
+    public BitMask binarize(PixelBuffer pixels) {
+        return BitMask.where(pixels, argb -> {
+            int r = PixelBuffer.red(argb), g = PixelBuffer.green(argb), b = PixelBuffer.blue(argb);
+            return r*r + g*g + b*b < below;
+        });
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof GlobalBinarizer && ((GlobalBinarizer) o).threshold == threshold;
+    }
+
+    @Override
+    public int hashCode() {
+        return Double.hashCode(threshold);
+    }
+}
@@ -0,0 +1,95 @@
+package MixedRealityPDF.ImageProcessor.Binarization;
+
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+import MixedRealityPDF.ImageProcessor.RowBands;
+
+/**
+ * Summed-area tables of the grey levels of a page and of their squares, from which the mean and variance of any
+ * rectangle come from four lookups each, however large the rectangle.
+ *
+ * The tables are ints and are allowed to overflow: a rectangle's sum is worked out modulo 2^32, which gives the true sum
+ * as long as that is below 2^32. Squares of grey levels are at most 255^2, so that holds for rectangles of up to
+ * MAX_AREA pixels. This halves the memory of long tables, which for a 300 DPI page would be over 100MB.
+ */
+final class IntegralImage {
+
+    // Largest rectangle, in pixels, whose sums are exact.
+    static final long MAX_AREA = (1L << 32) / (255 * 255) - 1;
+
+    private final int width, height;
+    // Entry (x, y) of each table, at y * (width + 1) + x, is the sum over the pixels above and to the left of (x, y).
+    // Row 0 and column 0 are 0.
+    private final int[] sum, sumOfSquares;
+
+    private IntegralImage(int width, int height, int[] sum, int[] sumOfSquares) {
+        this.width = width;
+        this.height = height;
+        this.sum = sum;
+        this.sumOfSquares = sumOfSquares;
+    }
+
+    /**
+     * @param squares   whether to make the table of squares too, without which sumOfSquares() can't be used
+     */
+    static IntegralImage of(PixelBuffer pixels, boolean squares) {
+        int width = pixels.getWidth(), height = pixels.getHeight(), stride = width + 1;
+        int[] sum = new int[stride * (height + 1)];
+        int[] sumOfSquares = squares ? new int[sum.length] : null;
+        // Rows are summed across in parallel, then added up down the page.
+        RowBands.forEach(height, (from, to) -> {
+            for (int y = from; y < to; y++) {
+                int row = (y + 1) * stride, i = y * width;
+                int s = 0, sq = 0;
+                for (int x = 0; x < width; x++, i++) {
+                    int grey = grey(pixels.get(i));
+                    s += grey;
+                    sum[row + x + 1] = s;
+                    if (squares) {
+                        sq += grey * grey;
+                        sumOfSquares[row + x + 1] = sq;
+                    }
+                }
+            }
+        });
+        for (int i = 2 * stride; i < sum.length; i++)
+            sum[i] += sum[i - stride];
+        for (int i = 2 * stride; squares && i < sum.length; i++)
+            sumOfSquares[i] += sumOfSquares[i - stride];
+        return new IntegralImage(width, height, sum, sumOfSquares);
+    }
+
+    /**
+     * @return The grey level of `argb', from 0 to 255, weighting the channels as ITU-R BT.601 luma does.
+     */
+    static int grey(int argb) {
+        return (299 * PixelBuffer.red(argb) + 587 * PixelBuffer.green(argb) + 114 * PixelBuffer.blue(argb) + 500) / 1000;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return Sum of the grey levels of the pixels with x0 <= x < x1 and y0 <= y < y1.
+     */
+    long sum(int x0, int y0, int x1, int y1) {
+        return rectangle(sum, x0, y0, x1, y1);
+    }
+
+    /**
+     * @return Sum of the squares of the grey levels of the pixels with x0 <= x < x1 and y0 <= y < y1.
+     */
+    long sumOfSquares(int x0, int y0, int x1, int y1) {
+        return rectangle(sumOfSquares, x0, y0, x1, y1);
+    }
+
+    private long rectangle(int[] table, int x0, int y0, int x1, int y1) {
+        int stride = width + 1;
+        int total = table[y1 * stride + x1] - table[y0 * stride + x1] - table[y1 * stride + x0] + table[y0 * stride + x0];
+        return Integer.toUnsignedLong(total);
+    }
+}
@@ -0,0 +1,40 @@
+package MixedRealityPDF.ImageProcessor.Binarization;
+
+/**
+ * Sauvola's threshold, mean * (1 + k * (deviation / R - 1)) over the window, with R = 128 the largest deviation grey
+ * levels can have. Where the window is plain paper the deviation is small and the threshold drops well below the
+ * paper's grey, so shadows and scanner noise aren't taken for ink; around text it comes close to the mean.
+ */
+public class SauvolaBinarizer extends AdaptiveBinarizer {
+
+    private static final double R = 128;
+
+    private final double k;
+
+    public SauvolaBinarizer() {
+        this(51, 0.34);
+    }
+
+    /**
+     * @param window    side of the window in pixels, odd. A little more than the height of a line of text works well.
+     * @param k         from 0 to 1. The larger k, the darker a pixel has to be, compared with its window, to be ink.
+     */
+    public SauvolaBinarizer(int window, double k) {
+        super(window);
+        if (k < 0 || k > 1)
+            throw new IllegalArgumentException("k must be between 0 and 1: " + k);
+        this.k = k;
+    }
+
+    @Override
+    protected boolean isInk(int grey, int area, long sum, long sumOfSquares) {
+        double mean = sum / (double) area;
+        double variance = Math.max(0, sumOfSquares / (double) area - mean * mean);
+        return grey <= mean * (1 + k * (Math.sqrt(variance) / R - 1));
+    }
+
+    @Override
+    protected boolean usesVariance() {
+        return true;
+    }
+}
@@ -0,0 +1,275 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * One bit per pixel of an image, e.g. which pixels are ink. Bits are kept row by row in longs, bit x % 64 of word
+ * x / 64 of a row being pixel x, so a row can be scanned, counted or combined a word at a time. Rows start on a fresh
+ * word and the unused bits at the end of each row are always clear.
+ */
+public final class BitMask {
+
+  /** Receives the coordinates of set bits. */
+  public interface PixelConsumer {
+    void accept(int x, int y);
+  }
+
+  private final int width, height;
+  private final int wordsPerRow;
+  private final long[] words;
+
+  public BitMask(int width, int height) {
+    this(width, height, new long[wordsPerRow(width) * height]);
+  }
+
+  private BitMask(int width, int height, long[] words) {
+    this.width = width;
+    this.height = height;
+    this.wordsPerRow = wordsPerRow(width);
+    this.words = words;
+  }
+
+  private static int wordsPerRow(int width) {
+    return (width + 63) >>> 6;
+  }
+
+  /**
+   * @return A mask with the bit of every pixel of `image' whose ARGB value passes `test' set.
+   */
+  public static BitMask where(BufferedImage image, IntPredicate test) {
+    return where(PixelBuffer.of(image), test);
+  }
+
+  public static BitMask where(PixelBuffer pixels, IntPredicate test) {
+    BitMask mask = new BitMask(pixels.getWidth(), pixels.getHeight());
+    RowBands.forEach(mask.height, (from, to) -> {
+      int i = from * mask.width;
+      for (int y = from; y < to; y++) {
+        int row = y * mask.wordsPerRow;
+        for (int x = 0; x < mask.width; x++, i++) {
+          if (test.test(pixels.get(i)))
+            mask.words[row + (x >>> 6)] |= 1L << x;
+        }
+      }
+    });
+    return mask;
+  }
+
+  /**
+   * @return A mask of the pixels that are neither white (-1) nor fully transparent black (0).
+   */
+  public static BitMask nonBlank(BufferedImage image) {
+    return where(image, px -> px != -1 && px != 0);
+  }
+
+  /**
+   * @param words as returned by toLongArray() for a mask of the same size
+   */
+  public static BitMask fromLongArray(int width, int height, long[] words) {
+    if (words.length != wordsPerRow(width) * height)
+      throw new IllegalArgumentException("Expected " + wordsPerRow(width) * height + " words, got " + words.length);
+    return new BitMask(width, height, words.clone());
+  }
+
+  public long[] toLongArray() {
+    return words.clone();
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public boolean get(int x, int y) {
+    return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+  }
+
+  public void set(int x, int y) {
+    words[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+  }
+
+  public void set(int x, int y, boolean value) {
+    if (value)
+      set(x, y);
+    else
+      clear(x, y);
+  }
+
+  public void clear(int x, int y) {
+    words[y * wordsPerRow + (x >>> 6)] &= ~(1L << x);
+  }
+
+  /**
+   * @return Number of set bits.
+   */
+  public long cardinality() {
+    return PixelKernels.get().bitCount(words, 0, words.length);
+  }
+
+  public int rowCardinality(int y) {
+    return (int) PixelKernels.get().bitCount(words, y * wordsPerRow, (y + 1) * wordsPerRow);
+  }
+
+  /**
+   * @return Number of set bits (x', y) with x' < x.
+   */
+  public int rowCardinality(int y, int x) {
+    int row = y * wordsPerRow;
+    int count = (int) PixelKernels.get().bitCount(words, row, row + (x >>> 6));
+    if ((x & 63) != 0)
+      count += Long.bitCount(words[row + (x >>> 6)] & (-1L >>> (64 - (x & 63))));
+    return count;
+  }
+
+  /**
+   * @return The smallest x with (x, y) set, or -1 if row y is empty.
+   */
+  public int firstInRow(int y) {
+    int row = y * wordsPerRow;
+    for (int w = 0; w < wordsPerRow; w++) {
+      if (words[row + w] != 0)
+        return (w << 6) + Long.numberOfTrailingZeros(words[row + w]);
+    }
+    return -1;
+  }
+
+  /**
+   * @return The largest x with (x, y) set, or -1 if row y is empty.
+   */
+  public int lastInRow(int y) {
+    int row = y * wordsPerRow;
+    for (int w = wordsPerRow - 1; w >= 0; w--) {
+      if (words[row + w] != 0)
+        return (w << 6) + 63 - Long.numberOfLeadingZeros(words[row + w]);
+    }
+    return -1;
+  }
+
+  /**
+   * Calls `consumer' with every set bit, in row-major order.
+   */
+  public void forEach(PixelConsumer consumer) {
+    forEach(0, height, consumer);
+  }
+
+  /**
+   * Calls `consumer' with every set bit in rows fromRow (inclusive) to toRow (exclusive), in row-major order.
+   */
+  public void forEach(int fromRow, int toRow, PixelConsumer consumer) {
+    for (int y = fromRow; y < toRow; y++) {
+      int row = y * wordsPerRow;
+      for (int w = 0; w < wordsPerRow; w++) {
+        long word = words[row + w];
+        while (word != 0) {
+          consumer.accept((w << 6) + Long.numberOfTrailingZeros(word), y);
+          word &= word - 1;
+        }
+      }
+    }
+  }
+
+  // The combining operations change this mask in place and return it. Both masks must be the same size.
+
+  public BitMask and(BitMask other) {
+    checkSameSize(other);
+    for (int i = 0; i < words.length; i++)
+      words[i] &= other.words[i];
+    return this;
+  }
+
+  public BitMask or(BitMask other) {
+    checkSameSize(other);
+    for (int i = 0; i < words.length; i++)
+      words[i] |= other.words[i];
+    return this;
+  }
+
+  public BitMask xor(BitMask other) {
+    checkSameSize(other);
+    for (int i = 0; i < words.length; i++)
+      words[i] ^= other.words[i];
+    return this;
+  }
+
+  public BitMask andNot(BitMask other) {
+    checkSameSize(other);
+    for (int i = 0; i < words.length; i++)
+      words[i] &= ~other.words[i];
+    return this;
+  }
+
+  private void checkSameSize(BitMask other) {
+    if (other.width != width || other.height != height)
+      throw new IllegalArgumentException("Masks are " + width + "x" + height + " and "
+              + other.width + "x" + other.height);
+  }
+
+  // For kernels filling the mask a row of words at a time (see PixelKernels).
+
+  long[] words() {
+    return words;
+  }
+
+  int rowOffset(int y) {
+    return y * wordsPerRow;
+  }
+
+  public BitMask copy() {
+    return new BitMask(width, height, words.clone());
+  }
+
+  /**
+   * @return A new mask with bit (x + dx, y + dy) set for every set bit (x, y) of this one. Bits moved outside the mask
+   * are lost and bits moved in from outside are clear.
+   */
+  public BitMask shift(int dx, int dy) {
+    BitMask shifted = new BitMask(width, height);
+    if (Math.abs(dx) >= width || Math.abs(dy) >= height)
+      return shifted;
+    int wordShift = Math.abs(dx) >>> 6, bitShift = Math.abs(dx) & 63;
+    for (int y = Math.max(0, dy); y < Math.min(height, height + dy); y++) {
+      int from = (y - dy) * wordsPerRow, to = y * wordsPerRow;
+      for (int w = 0; w < wordsPerRow; w++) {
+        long word;
+        if (dx >= 0) {
+          // Towards larger x: towards more significant bits.
+          int src = w - wordShift;
+          word = src < 0 ? 0 : words[from + src] << bitShift;
+          if (bitShift != 0 && src - 1 >= 0)
+            word |= words[from + src - 1] >>> (64 - bitShift);
+        } else {
+          int src = w + wordShift;
+          word = src >= wordsPerRow ? 0 : words[from + src] >>> bitShift;
+          if (bitShift != 0 && src + 1 < wordsPerRow)
+            word |= words[from + src + 1] << (64 - bitShift);
+        }
+        shifted.words[to + w] = word;
+      }
+      shifted.clearPadding(y);
+    }
+    return shifted;
+  }
+
+  private void clearPadding(int y) {
+    if ((width & 63) != 0)
+      words[(y + 1) * wordsPerRow - 1] &= -1L >>> (64 - (width & 63));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof BitMask))
+      return false;
+    BitMask other = (BitMask) o;
+    return width == other.width && height == other.height && Arrays.equals(words, other.words);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (31 * width + height) + Arrays.hashCode(words);
+  }
+}
@@ -1,16 +1,25 @@
 package MixedRealityPDF.ImageProcessor.ColourRemoval;
 
+import MixedRealityPDF.ImageProcessor.BitMask;
+import MixedRealityPDF.ImageProcessor.ColourfulnessClassifier;
+import MixedRealityPDF.ImageProcessor.CompactPage;
 import MixedRealityPDF.ImageProcessor.IDifferenceMap;
-import MixedRealityPDF.ImageProcessor.Stats;
+import MixedRealityPDF.ImageProcessor.InkMap;
+import MixedRealityPDF.ImageProcessor.PageBufferPool;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+import MixedRealityPDF.ImageProcessor.RowBands;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.function.UnaryOperator;
 
 public class ColorExtractor implements IDifferenceMap {
 
+    private static final int TRANSPARENT_WHITE = new Color(255, 255, 255, 0).getRGB();
+
 
 
 
@@ -19,42 +28,62 @@ public class ColorExtractor implements IDifferenceMap {
         return extractColorComponent(modified);
     }
 
+    // The original isn't looked at, so it isn't kept either.
+    @Override
+    public UnaryOperator<BufferedImage> prepare(BufferedImage original) {
+        return ColorExtractor::extractColorComponent;
+    }
+
+    @Override
+    public UnaryOperator<BufferedImage> prepare(CompactPage original) {
+        return ColorExtractor::extractColorComponent;
+    }
+
     private static BufferedImage extractCol(BufferedImage a, double threshold) {
-        BufferedImage out = new BufferedImage(a.getWidth(), a.getHeight(),
-                BufferedImage.TYPE_INT_ARGB);
-        for (int x=0; x<a.getWidth(); x++) {
-            for (int y=0; y<a.getHeight(); y++) {
-                Color aCol = new Color( a.getRGB(x,y) , true);
-                Color outCol;
-                if (Stats.getStdDev(new double[]{aCol.getRed(),
-                        aCol.getGreen(), aCol.getBlue()})/255 > threshold) {
-                    outCol = aCol;
+        PixelBuffer in = PixelBuffer.of(a);
+        return extractCol(in, InkMap.of(in, InkMap.BLACK_THRESHOLD, threshold));
+    }
+
+    private static BufferedImage extractCol(PixelBuffer in, InkMap ink) {
+        int width = in.getWidth(), height = in.getHeight();
+        // Every pixel is set below, so the image needn't be cleared.
+        PixelBuffer out = PixelBuffer.of(PageBufferPool.shared().lease(width, height, BufferedImage.TYPE_INT_ARGB));
+        BitMask coloured = ink.getColoured();
+        int[] colouredPerRow = ink.getColouredPerRow();
+        RowBands.forEach(height, (from, to) -> {
+            for (int y=from, i=from*width; y<to; y++) {
+                if (colouredPerRow[y] == 0) {
+                    for (int x=0; x<width; x++, i++)
+                        out.set(i, TRANSPARENT_WHITE);
+                    continue;
+                }
+                for (int x=0; x<width; x++, i++) {
+                    out.set(i, coloured.get(x, y) ? in.get(i) : TRANSPARENT_WHITE);
                 }
-                else outCol = new Color(255, 255, 255, 0);
-                out.setRGB( x, y, outCol.getRGB() );
             }
-        }
-        return out;
+        });
+        return out.toImage();
     }
 
 
     private static BufferedImage extractBlack(BufferedImage a, double threshold) {
-        BufferedImage out = new BufferedImage(a.getWidth(), a.getHeight(), a.getType());
-        for (int x=0; x<a.getWidth(); x++) {
-            for (int y=0; y<a.getHeight(); y++) {
-                Color aCol = new Color( a.getRGB(x,y) , true);
-                Color outCol;
+        ColourfulnessClassifier colourful = ColourfulnessClassifier.ofFraction(threshold);
+        PixelBuffer in = PixelBuffer.of(a);
+        PixelBuffer out = PixelBuffer.create(a.getWidth(), a.getHeight(), a.getType());
+        final int width = a.getWidth(), white = Color.WHITE.getRGB();
+        RowBands.forEach(a.getHeight(), (from, to) -> {
+            for (int i=from*width; i<to*width; i++) {
+                int aCol = in.get(i);
                 if (
-//                        ColorDistance(aCol, Color.WHITE)/WHITE_DIST > threshold
-//                     && ColorDistance(aCol, Color.BLACK)/WHITE_DIST > threshold
-                        Stats.getStdDev(new double[]{aCol.getRed(), aCol.getGreen(), aCol.getBlue()})/255 < threshold) {
-                    outCol = aCol;
+//                            ColorDistance(aCol, Color.WHITE)/WHITE_DIST > threshold
+//                         && ColorDistance(aCol, Color.BLACK)/WHITE_DIST > threshold
+                        colourful.isGrey(aCol)) {
+                    out.set(i, aCol);
                 }
-                else outCol = Color.WHITE;
-                out.setRGB( x, y, outCol.getRGB() );
+                else out.set(i, white);
             }
-        }
-        return out;
+        });
+        return out.toImage();
     }
 
 
@@ -64,6 +93,13 @@ public class ColorExtractor implements IDifferenceMap {
 
 
     public static BufferedImage extractColorComponent(BufferedImage original) {
-        return extractCol(original, 0.1);
+        return extractCol(original, InkMap.COLOUR_THRESHOLD);
+    }
+
+    /**
+     * Same as extractColorComponent(image), using an ink map of `image' that has already been made.
+     */
+    public static BufferedImage extractColorComponent(BufferedImage image, InkMap ink) {
+        return extractCol(PixelBuffer.of(image), ink);
     }
 }
@@ -1,6 +1,8 @@
 package MixedRealityPDF.ImageProcessor.ColourRemoval;
 
 import MixedRealityPDF.ImageProcessor.IDifferenceMap;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+import MixedRealityPDF.ImageProcessor.RowBands;
 
 import javax.imageio.ImageIO;
 import java.awt.Color;
@@ -10,53 +12,54 @@ import java.nio.file.Paths;
 
 public abstract class DiffMap implements IDifferenceMap {
 
-    static IColorDistance d = new Euclidian();
+    static IPixelDistance d = new Euclidian();
+
+    static final int TRANSPARENT_WHITE = new Color(255, 255, 255, 0).getRGB();
+    private static final int BLACK = Color.BLACK.getRGB();
 
     protected static BufferedImage myGreyscale(BufferedImage image) {
-        BufferedImage greyscale = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
-        for (int x=0; x<image.getWidth(); x++) {
-            for (int y=0; y<image.getHeight(); y++) {
-                final Color orPixel = new Color( image.getRGB(x, y) );
-//                if (!orPixel.equals(Color.WHITE)) {
-//                    System.out.println("Non-white!");
-//                }
-                final double orDist = d.apply(orPixel, Color.BLACK);
+        PixelBuffer in = PixelBuffer.of(image);
+        PixelBuffer greyscale = PixelBuffer.create(image.getWidth(), image.getHeight(), image.getType());
+        final int width = image.getWidth();
+        RowBands.forEach(image.getHeight(), (from, to) -> {
+            for (int i=from*width; i<to*width; i++) {
+                final int orPixel = in.get(i);
+                final double orDist = d.distance(orPixel, BLACK);
                 int outComp = (int) Math.round( (orDist / d.max() ) * 255 );
-                Color greyPixel = new Color(outComp, outComp, outComp);
-                greyscale.setRGB(x, y, greyPixel.getRGB());
+                greyscale.set(i, PixelBuffer.argb(255, outComp, outComp, outComp));
             }
-        }
-        return greyscale;
+        });
+        return greyscale.toImage();
     }
 
     protected static BufferedImage myPureBW(BufferedImage image) {
-        BufferedImage pureBW = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
-        for (int x=0; x<image.getWidth(); x++) {
-            for (int y=0; y<image.getHeight(); y++) {
-                final Color orPixel = new Color( image.getRGB(x, y) );
-//                if (!orPixel.equals(Color.WHITE)) {
-//                    System.out.println("Non-white!");
-//                }
-                final double orDist = d.apply(orPixel, Color.BLACK);
+        PixelBuffer in = PixelBuffer.of(image);
+        PixelBuffer pureBW = PixelBuffer.create(image.getWidth(), image.getHeight(), image.getType());
+        final int width = image.getWidth();
+        RowBands.forEach(image.getHeight(), (from, to) -> {
+            for (int i=from*width; i<to*width; i++) {
+                final int orPixel = in.get(i);
+                final double orDist = d.distance(orPixel, BLACK);
                 int outComp = (int) Math.round( orDist / d.max() ) * 255;
-                Color greyPixel = new Color(outComp, outComp, outComp);
-                pureBW.setRGB(x, y, greyPixel.getRGB());
+                pureBW.set(i, PixelBuffer.argb(255, outComp, outComp, outComp));
             }
-        }
-        return pureBW;
+        });
+        return pureBW.toImage();
     }
 
     protected static BufferedImage greyscale(BufferedImage image) {
         double[] weightsRGB = {1.0, 1.0, 1.0};
-        BufferedImage greyscale = new BufferedImage(image.getWidth(), image.getHeight(), image.getType());
-        for (int x=0; x<image.getWidth(); x++) {
-            for (int y = 0; y < image.getHeight(); y++) {
-                final Color orPixel = new Color( image.getRGB(x, y) );
-                int intensity = (int) Math.round( ( weightsRGB[0]*orPixel.getRed() + weightsRGB[1]*orPixel.getGreen() + weightsRGB[2]*orPixel.getBlue() ) /3.0 );
-                greyscale.setRGB(x, y, new Color(intensity, intensity, intensity).getRGB() );
+        PixelBuffer in = PixelBuffer.of(image);
+        PixelBuffer greyscale = PixelBuffer.create(image.getWidth(), image.getHeight(), image.getType());
+        final int width = image.getWidth();
+        RowBands.forEach(image.getHeight(), (from, to) -> {
+            for (int i=from*width; i<to*width; i++) {
+                final int orPixel = in.get(i);
+                int intensity = (int) Math.round( ( weightsRGB[0]*PixelBuffer.red(orPixel) + weightsRGB[1]*PixelBuffer.green(orPixel) + weightsRGB[2]*PixelBuffer.blue(orPixel) ) /3.0 );
+                greyscale.set(i, PixelBuffer.argb(255, intensity, intensity, intensity));
             }
-        }
-        return greyscale;
+        });
+        return greyscale.toImage();
     }
 
     public static void main(String[] args) throws IOException {
@@ -1,7 +1,15 @@
 package MixedRealityPDF.ImageProcessor.ColourRemoval;
 
-import java.awt.Color;
+import MixedRealityPDF.ImageProcessor.CompactPage;
+import MixedRealityPDF.ImageProcessor.PageBufferPool;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+import MixedRealityPDF.ImageProcessor.PixelKernels;
+import MixedRealityPDF.ImageProcessor.RowBands;
+import MixedRealityPDF.ImageProcessor.SparseDifference;
+
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.Function;
 
 public class Differ extends DiffMap {
 
@@ -11,20 +19,33 @@ public class Differ extends DiffMap {
         assert a.getWidth()==b.getWidth();
         assert a.getHeight()==b.getHeight();
 
-        BufferedImage out = new BufferedImage(a.getWidth(), a.getHeight(), a.getType());
-        for (int x=0; x<Math.min(a.getWidth(), b.getWidth()); x++) {
-            for (int y=0; y<Math.min(a.getHeight(), b.getHeight()); y++) {
-                Color aCol = new Color(a.getRGB(x,y) , true);
-                Color bCol = new Color(b.getRGB(x,y) , true);
+        PixelBuffer aPix = PixelBuffer.of(a);
+        PixelBuffer bPix = PixelBuffer.of(b);
+        // Cleared, in case the images differ in size and some pixels aren't set below.
+        PixelBuffer out = PixelBuffer.of(PageBufferPool.shared().lease(a.getWidth(), a.getHeight(), a.getType(), 0));
+        // Pixels whose distance, as a fraction of d.max(), is above threshold.
+        final int different = d.firstScoreWhere(fraction -> fraction > threshold);
+        final int width = Math.min(a.getWidth(), b.getWidth());
+        // Both Euclidian distances score by squared distance, which the pixel kernels compare directly.
+        final boolean squaredScore = d instanceof EuclidianSquared;
+        RowBands.forEach(Math.min(a.getHeight(), b.getHeight()), (from, to) -> {
+            PixelKernels kernels = PixelKernels.get();
+            for (int y=from; y<to; y++) {
+                if (squaredScore) {
+                    kernels.selectDifferent(aPix, bPix, y, width, different, out, TRANSPARENT_WHITE);
+                    continue;
+                }
+                for (int x=0; x<width; x++) {
+                    int aCol = aPix.get(x, y);
+                    int bCol = bPix.get(x, y);
 
-                Color outCol;
-                if (d.apply(aCol, bCol)/d.max() > threshold) outCol=aCol;
-                else outCol = new Color(255,255,255,0);
-                out.setRGB( x, y, outCol.getRGB() );
+                    if (d.score(aCol, bCol) >= different) out.set(x, y, aCol);
+                    else out.set(x, y, TRANSPARENT_WHITE);
+                }
             }
-        }
+        });
 
-        return out;
+        return out.toImage();
     }
 
     @Override
@@ -32,4 +53,42 @@ public class Differ extends DiffMap {
         return diffPix(modified, original, 0.3);
     }
 
+    // Same as diffPix(modified, original, 0.3), a row at a time against the
+    // rows of the compact original, so that neither the original nor the
+    // difference is ever a whole image.
+    @Override
+    public Function<BufferedImage, SparseDifference> prepareSparse(CompactPage original) {
+        final int different = d.firstScoreWhere(fraction -> fraction > 0.3);
+        final boolean squaredScore = d instanceof EuclidianSquared;
+        return modified -> {
+            PixelBuffer in = PixelBuffer.of(modified);
+            final int width = Math.min(in.getWidth(), original.getWidth());
+            final int height = Math.min(in.getHeight(), original.getHeight());
+            int type = modified.getType() == BufferedImage.TYPE_INT_RGB ? BufferedImage.TYPE_INT_RGB
+                    : BufferedImage.TYPE_INT_ARGB;
+            return SparseDifference.of(in.getWidth(), in.getHeight(), type, () -> {
+                // One row of the original per band, reused for each of its rows.
+                int[] originalRow = new int[original.getWidth()];
+                return (y, row) -> {
+                    // Pixels outside the original are left blank.
+                    if (y >= height) {
+                        Arrays.fill(row, SparseDifference.BLANK);
+                        return;
+                    }
+                    original.getRow(y, originalRow, 0);
+                    in.getRow(y, row, 0);
+                    if (squaredScore) {
+                        PixelKernels.get().selectDifferent(row, 0, 0, originalRow, 0, width, different, row, 0,
+                                TRANSPARENT_WHITE);
+                    } else {
+                        for (int x=0; x<width; x++) {
+                            if (d.score(row[x], originalRow[x]) < different) row[x] = TRANSPARENT_WHITE;
+                        }
+                    }
+                    Arrays.fill(row, width, row.length, SparseDifference.BLANK);
+                };
+            });
+        };
+    }
+
 }
@@ -1,7 +1,5 @@
 package MixedRealityPDF.ImageProcessor.ColourRemoval;
 
-import java.awt.Color;
-
 public class Euclidian extends EuclidianSquared {
 
     private final double MAX;
@@ -16,8 +14,9 @@ public class Euclidian extends EuclidianSquared {
         return MAX;
     }
 
+    // Scores are still squared distances, so only distanceOf needs a square root.
     @Override
-    public Double apply(Color a, Color b) {
-        return Math.sqrt( super.apply(a, b) );
+    public double distanceOf(int score) {
+        return Math.sqrt( score );
     }
 }
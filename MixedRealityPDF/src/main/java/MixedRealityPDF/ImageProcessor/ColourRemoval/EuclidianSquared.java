@@ -1,10 +1,13 @@
 package MixedRealityPDF.ImageProcessor.ColourRemoval;
 
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+
 import java.awt.Color;
 
-public class EuclidianSquared implements IColorDistance {
+public class EuclidianSquared implements IColorDistance, IPixelDistance {
 
-    private static final double MAX = 3*Math.pow(255, 2);
+    private static final int MAX_SCORE = 3*255*255;
+    private static final double MAX = MAX_SCORE;
 
     @Override
     public double max() {
@@ -13,9 +16,25 @@ public class EuclidianSquared implements IColorDistance {
 
     @Override
     public Double apply(Color a, Color b) {
-        return Math.pow(a.getRed()-b.getRed(), 2)
-             + Math.pow(a.getGreen()-b.getGreen(), 2)
-             + Math.pow(a.getBlue()-b.getBlue(), 2)
-        ;
+        return distanceOf(score(a.getRGB(), b.getRGB()));
+    }
+
+    // The score is the squared distance itself.
+    @Override
+    public int score(int a, int b) {
+        int dr = PixelBuffer.red(a) - PixelBuffer.red(b);
+        int dg = PixelBuffer.green(a) - PixelBuffer.green(b);
+        int db = PixelBuffer.blue(a) - PixelBuffer.blue(b);
+        return dr*dr + dg*dg + db*db;
+    }
+
+    @Override
+    public int maxScore() {
+        return MAX_SCORE;
+    }
+
+    @Override
+    public double distanceOf(int score) {
+        return score;
     }
 }
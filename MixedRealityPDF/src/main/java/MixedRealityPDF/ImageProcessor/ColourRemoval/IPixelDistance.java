@@ -0,0 +1,50 @@
+package MixedRealityPDF.ImageProcessor.ColourRemoval;
+
+import java.util.function.DoublePredicate;
+
+/**
+ * A colour distance on packed ARGB ints, for per-pixel loops. Pixels are compared by an integer score that grows with
+ * the distance, so a threshold on the distance can be turned into a threshold on the score once, before the loop, and
+ * each pixel then costs a few integer operations with no Color, Double or square root.
+ */
+public interface IPixelDistance {
+
+    /**
+     * @return An integer that orders pairs of pixels the same way their distance does.
+     */
+    int score(int argbA, int argbB);
+
+    int maxScore();
+
+    /**
+     * @return The distance of pixels with the given score.
+     */
+    double distanceOf(int score);
+
+    /**
+     * @return The largest distance there is, distanceOf(maxScore()).
+     */
+    double max();
+
+    default double distance(int argbA, int argbB) {
+        return distanceOf(score(argbA, argbB));
+    }
+
+    /**
+     * @param test  a test on distance / max() that, once passed, is passed by every larger distance too, e.g.
+     *              fraction -> fraction > threshold
+     * @return The smallest score whose distance passes `test', or maxScore() + 1 if none does. A pair of pixels passes
+     * `test' iff score(a, b) >= the result.
+     */
+    default int firstScoreWhere(DoublePredicate test) {
+        int lo = 0, hi = maxScore() + 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (test.test(distanceOf(mid) / max()))
+                hi = mid;
+            else
+                lo = mid + 1;
+        }
+        return lo;
+    }
+}
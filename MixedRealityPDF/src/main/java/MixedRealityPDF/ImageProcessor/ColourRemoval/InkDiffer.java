@@ -0,0 +1,76 @@
+package MixedRealityPDF.ImageProcessor.ColourRemoval;
+
+import MixedRealityPDF.ImageProcessor.BitMask;
+import MixedRealityPDF.ImageProcessor.CompactPage;
+import MixedRealityPDF.ImageProcessor.IBinarizer;
+import MixedRealityPDF.ImageProcessor.PageBufferPool;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+import MixedRealityPDF.ImageProcessor.RowBands;
+
+import java.awt.image.BufferedImage;
+import java.util.function.UnaryOperator;
+
+/**
+ * Keeps the pixels of the scan that are ink where the original has no ink nearby. Ink is whatever the binarizer says it
+ * is, so with an adaptive binarizer shadows and uneven lighting of the scan don't show up as differences the way they
+ * do for the distance-based maps.
+ */
+public class InkDiffer extends DiffMap {
+
+    private final IBinarizer binarizer;
+    // How far, in pixels, a scan's ink may be from the original's and still count as the same ink.
+    private final int tolerance;
+
+    public InkDiffer(IBinarizer binarizer) {
+        this(binarizer, 1);
+    }
+
+    public InkDiffer(IBinarizer binarizer, int tolerance) {
+        if (tolerance < 0)
+            throw new IllegalArgumentException("Tolerance must not be negative: " + tolerance);
+        this.binarizer = binarizer;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public BufferedImage findDifference(BufferedImage original, BufferedImage modified) {
+        return prepare(original).apply(modified);
+    }
+
+    @Override
+    public UnaryOperator<BufferedImage> prepare(BufferedImage original) {
+        BitMask originalInk = grow(binarizer.binarize(original));
+        return modified -> {
+            PixelBuffer in = PixelBuffer.of(modified);
+            BitMask added = binarizer.binarize(in).andNot(originalInk);
+            int width = in.getWidth();
+            PixelBuffer out = PixelBuffer.of(PageBufferPool.shared().lease(width, in.getHeight(),
+                    BufferedImage.TYPE_INT_ARGB));
+            RowBands.forEach(in.getHeight(), (from, to) -> {
+                for (int y=from, i=from*width; y<to; y++) {
+                    for (int x=0; x<width; x++, i++)
+                        out.set(i, added.get(x, y) ? in.get(i) : TRANSPARENT_WHITE);
+                }
+            });
+            return out.toImage();
+        };
+    }
+
+    // Only the original's ink mask is kept, so the page is expanded just the once.
+    @Override
+    public UnaryOperator<BufferedImage> prepare(CompactPage original) {
+        return prepare(original.toImage());
+    }
+
+    // Sets every bit within `tolerance' of a set bit.
+    private BitMask grow(BitMask ink) {
+        BitMask grown = ink.copy();
+        for (int dy=-tolerance; dy<=tolerance; dy++) {
+            for (int dx=-tolerance; dx<=tolerance; dx++) {
+                if (dx != 0 || dy != 0)
+                    grown.or(ink.shift(dx, dy));
+            }
+        }
+        return grown;
+    }
+}
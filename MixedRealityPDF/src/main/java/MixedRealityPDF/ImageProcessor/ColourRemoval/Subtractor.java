@@ -1,6 +1,9 @@
 package MixedRealityPDF.ImageProcessor.ColourRemoval;
 
-import java.awt.Color;
+import MixedRealityPDF.ImageProcessor.PageBufferPool;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+import MixedRealityPDF.ImageProcessor.RowBands;
+
 import java.awt.image.BufferedImage;
 
 public class Subtractor extends DiffMap {
@@ -43,39 +46,47 @@ public class Subtractor extends DiffMap {
         assert a.getWidth()==b.getWidth();
         assert a.getHeight()==b.getHeight();
 
-        BufferedImage out = new BufferedImage(a.getWidth(), a.getHeight(), a.getType());
-        for (int x=0; x<Math.min(a.getWidth(), b.getWidth()); x++) {
-            for (int y=0; y<Math.min(a.getHeight(), b.getHeight()); y++) {
-                Color aCol = new Color( a.getRGB(x,y) , true);
-                Color bCol = new Color( b.getRGB(x,y) , true);
+        PixelBuffer aPix = PixelBuffer.of(a);
+        PixelBuffer bPix = PixelBuffer.of(b);
+        // Cleared, in case the images differ in size and some pixels aren't set below.
+        PixelBuffer out = PixelBuffer.of(PageBufferPool.shared().lease(a.getWidth(), a.getHeight(), a.getType(), 0));
+        // Pixels whose distance, as a fraction of d.max(), is below threshold are the same.
+        final int different = d.firstScoreWhere(fraction -> fraction >= threshold);
+        final int width = Math.min(a.getWidth(), b.getWidth());
+        RowBands.forEach(Math.min(a.getHeight(), b.getHeight()), (from, to) -> {
+            for (int y=from; y<to; y++) {
+                for (int x=0; x<width; x++) {
+                    int aCol = aPix.get(x, y);
+                    int bCol = bPix.get(x, y);
 
-                Color diff = new Color(
-//                        255 - Math.abs
-                        Math.max(0,
-                                ( aCol.getRed() - bCol.getRed() )
-                                )
-                        ,
-//                        255 - Math.abs
-                        Math.max(0,
-                                ( aCol.getBlue() - bCol.getBlue() )
-                                )
-                        ,
-//                        255 - Math.abs
-                        Math.max(0,
-                                ( aCol.getGreen() - bCol.getGreen() )
-                                )
-                        ,
-                        Math.max(0,
-                                255 - Math.abs
-                                        ( aCol.getAlpha() - bCol.getAlpha() )
-                        )
-                );
-                if (d.apply(aCol, bCol)/d.max() < threshold) diff = new Color(255, 255, 255, 0);
-                out.setRGB( x, y, diff.getRGB() );
+                    int diff = PixelBuffer.argb(
+                            Math.max(0,
+                                    255 - Math.abs
+                                            ( PixelBuffer.alpha(aCol) - PixelBuffer.alpha(bCol) )
+                            )
+                            ,
+//                            255 - Math.abs
+                            Math.max(0,
+                                    ( PixelBuffer.red(aCol) - PixelBuffer.red(bCol) )
+                                    )
+                            ,
+//                            255 - Math.abs
+                            Math.max(0,
+                                    ( PixelBuffer.blue(aCol) - PixelBuffer.blue(bCol) )
+                                    )
+                            ,
+//                            255 - Math.abs
+                            Math.max(0,
+                                    ( PixelBuffer.green(aCol) - PixelBuffer.green(bCol) )
+                                    )
+                    );
+                    if (d.score(aCol, bCol) < different) diff = TRANSPARENT_WHITE;
+                    out.set(x, y, diff);
+                }
             }
-        }
+        });
 
-        return out;
+        return out.toImage();
     }
 
 
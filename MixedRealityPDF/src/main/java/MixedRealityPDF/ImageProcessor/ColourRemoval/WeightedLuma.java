@@ -0,0 +1,46 @@
+package MixedRealityPDF.ImageProcessor.ColourRemoval;
+
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+
+import java.awt.Color;
+
+/**
+ * Difference in brightness, weighting the channels by how bright they look (ITU-R BT.601 luma). Unlike the Euclidian
+ * distances this ignores a change of hue that keeps the brightness, e.g. faint coloured scanner noise on white paper.
+ */
+public class WeightedLuma implements IColorDistance, IPixelDistance {
+
+    // Weights in thousandths, so that scores are exact integers.
+    private static final int RED = 299, GREEN = 587, BLUE = 114;
+    private static final int MAX_SCORE = 255*1000;
+    private static final double MAX = 255;
+
+    @Override
+    public double max() {
+        return MAX;
+    }
+
+    @Override
+    public Double apply(Color a, Color b) {
+        return distanceOf(score(a.getRGB(), b.getRGB()));
+    }
+
+    // The score is the difference in luma, in thousandths.
+    @Override
+    public int score(int a, int b) {
+        int luma = RED*(PixelBuffer.red(a) - PixelBuffer.red(b))
+                 + GREEN*(PixelBuffer.green(a) - PixelBuffer.green(b))
+                 + BLUE*(PixelBuffer.blue(a) - PixelBuffer.blue(b));
+        return Math.abs(luma);
+    }
+
+    @Override
+    public int maxScore() {
+        return MAX_SCORE;
+    }
+
+    @Override
+    public double distanceOf(int score) {
+        return score / 1000.0;
+    }
+}
@@ -0,0 +1,71 @@
+package MixedRealityPDF.ImageProcessor;
+
+/**
+ * Tells coloured pixels from grey ones by the standard deviation of their red, green and blue channels, with the
+ * threshold fixed when the classifier is made.
+ *
+ * For channels r, g and b the sample variance is ((r-g)^2 + (g-b)^2 + (r-b)^2) / 6, so stdev > t exactly when that
+ * integer sum of squares exceeds 6t^2. The sum is compared with a limit worked out here, so a pixel costs a few integer
+ * operations instead of a mean, a variance and a square root. Gives the same answers as testing
+ * Stats.getStdDev(new double[]{r, g, b}) against the threshold.
+ */
+public final class ColourfulnessClassifier {
+
+  private final double threshold;
+  // Sums of squares above `above' are coloured; sums below `below' are grey. They differ only when 6t^2 is a whole
+  // number, which is then neither.
+  private final int above, below;
+
+  /**
+   * @param threshold standard deviation of the channels, from 0 to 255, that a pixel has to exceed to be coloured
+   */
+  public ColourfulnessClassifier(double threshold) {
+    this.threshold = threshold;
+    if (threshold < 0) {
+      above = -1;
+      below = 0;
+    } else {
+      double limit = 6 * threshold * threshold;
+      above = (int) Math.min(Integer.MAX_VALUE, Math.floor(limit));
+      below = (int) Math.min(Integer.MAX_VALUE, Math.ceil(limit));
+    }
+  }
+
+  /**
+   * @param fraction standard deviation of the channels, as a fraction of 255, that a pixel has to exceed to be coloured
+   */
+  public static ColourfulnessClassifier ofFraction(double fraction) {
+    return new ColourfulnessClassifier(fraction * 255);
+  }
+
+  public double getThreshold() {
+    return threshold;
+  }
+
+  /**
+   * @return The largest (r-g)^2 + (g-b)^2 + (r-b)^2 of a pixel that isn't coloured, as PixelKernels.classifyInk takes
+   * it.
+   */
+  int colouredAbove() {
+    return above;
+  }
+
+  /**
+   * @return true iff the standard deviation of the channels of `argb' is more than the threshold.
+   */
+  public boolean isColoured(int argb) {
+    return sumOfSquares(argb) > above;
+  }
+
+  /**
+   * @return true iff the standard deviation of the channels of `argb' is less than the threshold.
+   */
+  public boolean isGrey(int argb) {
+    return sumOfSquares(argb) < below;
+  }
+
+  private static int sumOfSquares(int argb) {
+    int r = PixelBuffer.red(argb), g = PixelBuffer.green(argb), b = PixelBuffer.blue(argb);
+    return (r - g) * (r - g) + (g - b) * (g - b) + (r - b) * (r - b);
+  }
+}
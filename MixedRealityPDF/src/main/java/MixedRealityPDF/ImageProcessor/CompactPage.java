@@ -0,0 +1,165 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A page kept in about a quarter of the memory of an RGB image: a byte per pixel for the grey pixels, a mask of the
+ * coloured ones, and the full colour of just those. A rendered page is mostly black text, anti-aliased in greys, on
+ * white, with its colour in a few figures or highlights, so this is enough to stand in for the page once the stages
+ * have been prepared with it. Any pixel whose channels aren't all equal counts as coloured, however faint its tint,
+ * so the page comes back exactly as it was given, bar alpha. Immutable.
+ */
+public final class CompactPage {
+
+  private final int width, height;
+  // ITU-R BT.601 luma of each pixel, row by row; the exact channel of a grey pixel.
+  private final byte[] luma;
+  private final BitMask coloured;
+  // RGB of the coloured pixels in row-major order; those of row y start at colours[rowStart[y]].
+  private final int[] colours;
+  private final int[] rowStart;
+
+  private CompactPage(int width, int height, byte[] luma, BitMask coloured, int[] colours, int[] rowStart) {
+    this.width = width;
+    this.height = height;
+    this.luma = luma;
+    this.coloured = coloured;
+    this.colours = colours;
+    this.rowStart = rowStart;
+  }
+
+  /**
+   * @return `image' compacted. The pixels of a grey image (e.g. one rendered with ImageType.GRAY) are never coloured,
+   * so such a page costs a byte a pixel.
+   */
+  public static CompactPage of(BufferedImage image) {
+    PixelBuffer pixels = PixelBuffer.of(image);
+    int width = pixels.getWidth(), height = pixels.getHeight();
+    byte[] luma = new byte[width * height];
+    BitMask coloured = new BitMask(width, height);
+    RowBands.forEach(height, (from, to) -> {
+      for (int i = from * width, y = from; y < to; y++) {
+        for (int x = 0; x < width; x++, i++) {
+          int argb = pixels.get(i);
+          luma[i] = (byte) luma(argb);
+          if (!isGrey(argb))
+            coloured.set(x, y);
+        }
+      }
+    });
+    int[] rowStart = new int[height + 1];
+    for (int y = 0; y < height; y++)
+      rowStart[y + 1] = rowStart[y] + coloured.rowCardinality(y);
+    int[] colours = new int[rowStart[height]];
+    RowBands.forEach(height, (from, to) -> {
+      int[] next = {rowStart[from]};
+      coloured.forEach(from, to, (x, y) -> colours[next[0]++] = pixels.get(x, y) & 0xFFFFFF);
+    });
+    return new CompactPage(width, height, luma, coloured, colours, rowStart);
+  }
+
+  private static boolean isGrey(int argb) {
+    int red = PixelBuffer.red(argb);
+    return red == PixelBuffer.green(argb) && red == PixelBuffer.blue(argb);
+  }
+
+  /**
+   * @return The luma of `argb', from 0 to 255, weighting the channels as ITU-R BT.601 does. Exactly the channel of a
+   * grey pixel.
+   */
+  public static int luma(int argb) {
+    return (299 * PixelBuffer.red(argb) + 587 * PixelBuffer.green(argb) + 114 * PixelBuffer.blue(argb) + 500) / 1000;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getLuma(int x, int y) {
+    return luma[y * width + x] & 0xFF;
+  }
+
+  public boolean isColoured(int x, int y) {
+    return coloured.get(x, y);
+  }
+
+  /**
+   * @return A copy of the mask of coloured pixels.
+   */
+  public BitMask getColouredMask() {
+    return coloured.copy();
+  }
+
+  /**
+   * @return The opaque ARGB value of pixel (x, y), the same as the image's but for alpha.
+   */
+  public int getRGB(int x, int y) {
+    if (coloured.get(x, y))
+      return 0xFF000000 | colours[rowStart[y] + coloured.rowCardinality(y, x)];
+    int l = getLuma(x, y);
+    return PixelBuffer.argb(255, l, l, l);
+  }
+
+  /**
+   * Copies the opaque ARGB values of row y, as getRGB(x, y) gives them, into argb[offset] on. Costs a pass over the
+   * row's luma and the row's coloured pixels only.
+   */
+  public void getRow(int y, int[] argb, int offset) {
+    for (int x = 0, i = y * width; x < width; x++, i++) {
+      int l = luma[i] & 0xFF;
+      argb[offset + x] = PixelBuffer.argb(255, l, l, l);
+    }
+    int[] c = {rowStart[y]};
+    coloured.forEach(y, y + 1, (x, cy) -> argb[offset + x] = 0xFF000000 | colours[c[0]++]);
+  }
+
+  /**
+   * @return A new TYPE_INT_RGB image of the page.
+   */
+  public BufferedImage toImage() {
+    return crop(0, 0, width, height, BufferedImage.TYPE_INT_RGB);
+  }
+
+  /**
+   * @return A new TYPE_INT_ARGB image of the given part of the page, e.g. the area around an annotation.
+   */
+  public BufferedImage crop(int x, int y, int width, int height) {
+    return crop(x, y, width, height, BufferedImage.TYPE_INT_ARGB);
+  }
+
+  private BufferedImage crop(int x0, int y0, int width, int height, int type) {
+    if (x0 < 0 || y0 < 0 || x0 + width > this.width || y0 + height > this.height)
+      throw new IndexOutOfBoundsException(width + "x" + height + " at (" + x0 + ", " + y0 + ") is not inside "
+              + this.width + "x" + this.height);
+    PixelBuffer out = PixelBuffer.create(width, height, type);
+    RowBands.forEach(height, (from, to) -> {
+      for (int y = from; y < to; y++) {
+        int i = (y0 + y) * this.width + x0;
+        for (int x = 0; x < width; x++, i++) {
+          int l = luma[i] & 0xFF;
+          out.set(x, y, PixelBuffer.argb(255, l, l, l));
+        }
+        // Coloured pixels of the row come in order, so their colours are taken in turn.
+        int[] c = {rowStart[y0 + y]};
+        int row = y;
+        coloured.forEach(y0 + y, y0 + y + 1, (x, cy) -> {
+          if (x >= x0 && x < x0 + width)
+            out.set(x - x0, row, 0xFF000000 | colours[c[0]]);
+          c[0]++;
+        });
+      }
+    });
+    return out.toImage();
+  }
+
+  /**
+   * @return Bytes of pixel data the page holds.
+   */
+  public long bytes() {
+    return luma.length + 8L * ((width + 63) / 64) * height + 4L * colours.length + 4L * rowStart.length;
+  }
+}
@@ -0,0 +1,167 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+/**
+ * Shrinks images without losing thin strokes, as resampling to the nearest pixel does.
+ *
+ * A difference is shrunk to a mask of where its ink is, working straight from the spans of a SparseDifference so
+ * that only the ink is looked at. Any other image can be shrunk by averaging over the area each pixel covers.
+ */
+public final class Downscaler {
+
+  // Rows of a drawn image held at a time; see areaAverage(Drawing, int, int, int, int).
+  private static final int STRIP_ROWS = 1024;
+
+  /** Draws an image, in its own pixels, with `graphics'. */
+  public interface Drawing {
+    void draw(Graphics2D graphics);
+  }
+
+  private Downscaler() {}
+
+  /**
+   * @return A width x height mask over `difference', with the bit of each cell set iff any pixel of the difference
+   * that the cell overlaps, even partly, isn't blank. Unlike resampling, which keeps some rows and
+   * columns and skips the rest, this never loses a stroke, however thin.
+   */
+  public static BitMask orPool(SparseDifference difference, int width, int height) {
+    int inWidth = difference.getWidth(), inHeight = difference.getHeight();
+    BitMask pooled = new BitMask(width, height);
+    // Bands are rows of cells, so no two bands set bits in the same row.
+    RowBands.forEach(height, (from, to) -> {
+      for (int row = from; row < to; row++) {
+        int cellRow = row;
+        for (int y = firstCell(row, inHeight, height); y <= lastCell(row, inHeight, height); y++) {
+          difference.forEachSpan(y, (x, sy, length, colours, offset) -> {
+            for (int cell = firstCell(x, width, inWidth); cell <= lastCell(x + length - 1, width, inWidth); cell++)
+              pooled.set(cell, cellRow);
+          });
+        }
+      }
+    });
+    return pooled;
+  }
+
+  // The first and last cell of a grid `to' cells across that cell i of a grid `from' cells across the same span
+  // overlaps.
+  private static int firstCell(int i, int to, int from) {
+    return (int) ((long) i * to / from);
+  }
+
+  private static int lastCell(int i, int to, int from) {
+    return (int) (((long) (i + 1) * to + from - 1) / from) - 1;
+  }
+
+  /**
+   * @return `image' shrunk to width x height (each no bigger than the image's), as a TYPE_INT_ARGB image leased from
+   * PageBufferPool.shared(). Each pixel is the mean of the part of `image' it covers, pixels only partly covered
+   * counting in proportion, so unlike nearest-neighbour resampling, which keeps some rows and columns and skips the
+   * rest, this never loses a stroke thinner than the scale; it only lightens it.
+   */
+  public static BufferedImage areaAverage(BufferedImage image, int width, int height) {
+    PixelBuffer in = PixelBuffer.of(image);
+    PixelBuffer out = lease(in.getWidth(), in.getHeight(), width, height);
+    average(in::getRow, in.getWidth(), in.getHeight(), out, 0, height);
+    return out.toImage();
+  }
+
+  /**
+   * Same as areaAverage(BufferedImage, int, int) for an inWidth x inHeight image that is drawn rather than held, e.g.
+   * a scan turned and scaled as it is drawn. It is drawn a strip of about STRIP_ROWS rows at a time, onto a
+   * transparent TYPE_INT_ARGB image, and each strip is averaged into the output before the next is drawn, so the whole
+   * image is never held.
+   */
+  public static BufferedImage areaAverage(Drawing image, int inWidth, int inHeight, int width, int height) {
+    PixelBuffer out = lease(inWidth, inHeight, width, height);
+    double scaleY = (double) inHeight / height;
+    // Output rows per strip. The input rows they cover, from first() of the first to last() of the last, are fewer
+    // than their number times scaleY, plus two.
+    int rowsPerStrip = Math.max(1, (int) ((STRIP_ROWS - 2) / scaleY));
+    BufferedImage strip = new BufferedImage(inWidth,
+            Math.min(inHeight, (int) Math.ceil(rowsPerStrip * scaleY) + 1), BufferedImage.TYPE_INT_ARGB);
+    PixelBuffer stripPixels = PixelBuffer.of(strip);
+    for (int from = 0; from < height; from += rowsPerStrip) {
+      int top = first(from, scaleY);
+      // Transparent, as a new image is, wherever the drawing leaves it.
+      PageBufferPool.fill(strip, 0);
+      Graphics2D graphics = strip.createGraphics();
+      try {
+        graphics.translate(0, -top);
+        image.draw(graphics);
+      } finally {
+        graphics.dispose();
+      }
+      average((y, argb, offset) -> stripPixels.getRow(y - top, argb, offset), inWidth, inHeight, out, from,
+              Math.min(height, from + rowsPerStrip));
+    }
+    return out.toImage();
+  }
+
+  private static PixelBuffer lease(int inWidth, int inHeight, int width, int height) {
+    if (width < 1 || height < 1 || width > inWidth || height > inHeight)
+      throw new IllegalArgumentException("Can't shrink " + inWidth + "x" + inHeight + " to " + width + "x" + height);
+    return PixelBuffer.of(PageBufferPool.shared().lease(width, height, BufferedImage.TYPE_INT_ARGB));
+  }
+
+  // Supplies the rows of an image being shrunk, as PixelBuffer.getRow does.
+  private interface Rows {
+    void get(int y, int[] argb, int offset);
+  }
+
+  // Works out rows `from' to `to' of `out', an inWidth x inHeight image shrunk, from the rows of the image they cover.
+  private static void average(Rows in, int inWidth, int inHeight, PixelBuffer out, int from, int to) {
+    int width = out.getWidth();
+    // Input pixels per output pixel.
+    double scaleX = (double) inWidth / width, scaleY = (double) inHeight / out.getHeight();
+    RowBands.forEach(to - from, (bandFrom, bandTo) -> {
+      int[] row = new int[inWidth];
+      // Alpha, red, green and blue of each output pixel of the row, weighted by how much of it each input covers.
+      double[] sums = new double[4 * width];
+      for (int y = from + bandFrom; y < from + bandTo; y++) {
+        Arrays.fill(sums, 0);
+        for (int iy = first(y, scaleY); iy <= last(y, scaleY, inHeight); iy++) {
+          double wy = overlap(y, iy, scaleY);
+          in.get(iy, row, 0);
+          for (int x = 0, s = 0; x < width; x++, s += 4) {
+            for (int ix = first(x, scaleX); ix <= last(x, scaleX, inWidth); ix++) {
+              double w = wy * overlap(x, ix, scaleX);
+              int argb = row[ix];
+              sums[s] += w * PixelBuffer.alpha(argb);
+              sums[s + 1] += w * PixelBuffer.red(argb);
+              sums[s + 2] += w * PixelBuffer.green(argb);
+              sums[s + 3] += w * PixelBuffer.blue(argb);
+            }
+          }
+        }
+        // The overlaps of an output pixel add up to its area, scaleX * scaleY.
+        double area = scaleX * scaleY;
+        for (int x = 0, s = 0; x < width; x++, s += 4) {
+          out.set(x, y, PixelBuffer.argb(channel(sums[s] / area), channel(sums[s + 1] / area),
+                  channel(sums[s + 2] / area), channel(sums[s + 3] / area)));
+        }
+      }
+    });
+  }
+
+  // The first input pixel output pixel `o' covers, along an axis scaled down by `scale'.
+  private static int first(int o, double scale) {
+    return (int) Math.floor(o * scale);
+  }
+
+  // The last input pixel output pixel `o' covers, of `n' along the axis.
+  private static int last(int o, double scale, int n) {
+    return Math.min(n - 1, (int) Math.ceil((o + 1) * scale) - 1);
+  }
+
+  // How much of input pixel `i' output pixel `o' covers, in input pixels.
+  private static double overlap(int o, int i, double scale) {
+    return Math.max(0, Math.min(i + 1, (o + 1) * scale) - Math.max(i, o * scale));
+  }
+
+  private static int channel(double value) {
+    return Math.min(255, (int) (value + 0.5));
+  }
+}
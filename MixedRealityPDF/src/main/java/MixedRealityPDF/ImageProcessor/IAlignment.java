@@ -1,6 +1,9 @@
 package MixedRealityPDF.ImageProcessor;
 
+import MixedRealityPDF.ImageProcessor.Alignment.PageAnalysis;
+
 import java.awt.image.BufferedImage;
+import java.util.function.UnaryOperator;
 
 public interface IAlignment {
 
@@ -8,7 +11,30 @@ public interface IAlignment {
      * Aligns as image of a page of the scanned document with an image of the same page from the original document
      * @param original
      * @param modified
-     * @return          Image of the scanned document aligned with the original
+     * @return          Image of the scanned document aligned with the original. If it was leased from
+     *                  PageBufferPool.shared(), the pipeline gives it back once done with it; any other image is left
+     *                  alone, so an implementation may keep and reuse the images it returns.
      */
     public BufferedImage align(BufferedImage original, BufferedImage modified);
+
+    /**
+     * Does whatever work depends only on the original up front, so that many scans of the same page can be aligned
+     * against it without repeating that work. The returned function must be safe to call from several threads.
+     * @param original
+     * @return          Function taking a scanned page to the result of align(original, scan)
+     */
+    default UnaryOperator<BufferedImage> prepare(BufferedImage original) {
+        return modified -> align(original, modified);
+    }
+
+    /**
+     * Same as prepare(original), for when an analysis of the original has already been made, e.g. one kept in a cache.
+     * Implementations that can use it should, rather than analysing the original again.
+     * @param original
+     * @param analysis  PageAnalysis.of(original)
+     * @return          Function taking a scanned page to the result of align(original, scan)
+     */
+    default UnaryOperator<BufferedImage> prepare(BufferedImage original, PageAnalysis analysis) {
+        return prepare(original);
+    }
 }
@@ -0,0 +1,19 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+
+// Decides which pixels of a page are black ink and which are paper. Used by
+// alignment (see ImageWrapper) and by difference maps that compare ink, so
+// that a binarizer suited to the scans can be swapped in for all of them.
+public interface IBinarizer {
+
+    /**
+     * @param pixels    the page
+     * @return          a new mask with the bits of the ink pixels set. Must be thread safe.
+     */
+    BitMask binarize(PixelBuffer pixels);
+
+    default BitMask binarize(BufferedImage image) {
+        return binarize(PixelBuffer.of(image));
+    }
+}
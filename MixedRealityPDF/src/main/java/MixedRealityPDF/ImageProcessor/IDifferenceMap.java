@@ -2,9 +2,48 @@ package MixedRealityPDF.ImageProcessor;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 // Difference map given 2 of the same doccument modified and unmodified extract
 // the difference between the 2.
 public interface IDifferenceMap {
     BufferedImage findDifference(BufferedImage original, BufferedImage modified);
+
+    // Same as IAlignment.prepare: fixes the original so that many scans of
+    // the same page can be compared against it. Must be thread safe.
+    default UnaryOperator<BufferedImage> prepare(BufferedImage original) {
+        return modified -> findDifference(original, modified);
+    }
+
+    // Same as prepare(original), for an original kept as a CompactPage. By
+    // default the page is expanded again for each scan, so that it is only
+    // held in full while a scan is being compared against it;
+    // implementations that keep a summary of the original instead should
+    // make it from original.toImage() here.
+    default UnaryOperator<BufferedImage> prepare(CompactPage original) {
+        return modified -> findDifference(original.toImage(), modified);
+    }
+
+    // Same as findDifference, with the difference kept as runs of the
+    // pixels that aren't blank.
+    default SparseDifference findSparseDifference(BufferedImage original, BufferedImage modified) {
+        return SparseDifference.of(findDifference(original, modified));
+    }
+
+    // Same as prepare(original), with the differences kept sparse. By
+    // default each difference is still made as an image, which goes back to
+    // the PageBufferPool once it has been encoded; implementations that can
+    // work a difference out a row at a time should, so that no page-sized
+    // image is made.
+    default Function<BufferedImage, SparseDifference> prepareSparse(CompactPage original) {
+        UnaryOperator<BufferedImage> prepared = prepare(original);
+        return modified -> {
+            BufferedImage difference = prepared.apply(modified);
+            SparseDifference sparse = SparseDifference.of(difference);
+            if (difference != modified)
+                PageBufferPool.shared().release(difference);
+            return sparse;
+        };
+    }
 }
@@ -0,0 +1,36 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.util.function.Predicate;
+
+// Cheap test, run before alignment, of whether a scanned page has been
+// marked at all. Pages it rejects skip every later stage, so it should only
+// reject a page when it is sure the page is clean.
+public interface IPageFilter {
+
+    // Lets every page through, without keeping hold of the original.
+    IPageFilter NONE = new IPageFilter() {
+        @Override
+        public boolean mayBeAnnotated(BufferedImage original, BufferedImage modified) {
+            return true;
+        }
+
+        @Override
+        public Predicate<BufferedImage> prepare(BufferedImage original) {
+            return modified -> true;
+        }
+    };
+
+    /**
+     * @param original  image of the page from the original document
+     * @param modified  image of the same page from the scan, not yet aligned
+     * @return          false iff the scan is judged to carry no annotations
+     */
+    boolean mayBeAnnotated(BufferedImage original, BufferedImage modified);
+
+    // Same as IAlignment.prepare: fixes the original so that many scans of
+    // the same page can be tested against it. Must be thread safe.
+    default Predicate<BufferedImage> prepare(BufferedImage original) {
+        return modified -> mayBeAnnotated(original, modified);
+    }
+}
@@ -2,66 +2,158 @@ package MixedRealityPDF.ImageProcessor;
 
 import java.awt.*;
 import java.awt.image.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 
 public class ImgHelper {
-  public static BufferedImage computeBlackAndWhite(BufferedImage image){
-    // true white, so that true luminosity of the image would be preserved.
-    int threshold = 255*3;
+  // Shared by every caller of isColor(c).
+  private static final ColourfulnessClassifier COLOUR = new ColourfulnessClassifier(0.1f);
+  // Classifiers for isColor(c, threshold), made once per threshold.
+  private static final Map<Float, ColourfulnessClassifier> COLOUR_BY_THRESHOLD = new ConcurrentHashMap<>();
+
+  // true white, so that true luminosity of the image would be preserved.
+  private static final int BNW_THRESHOLD = 255*3;
+  // Images with at least this many pixels are dithered in parallel by computeBlackAndWhiteMask(image).
+  private static final long WAVEFRONT_PIXELS = 1 << 20;
+  // In a wavefront, a row is dithered this many columns at a time.
+  private static final int WAVEFRONT_COLUMNS = 64;
 
+  public static BufferedImage computeBlackAndWhite(BufferedImage image){
     int width = image.getWidth();
     int height = image.getHeight();
+    BitMask blackPixels = computeBlackAndWhiteMask(image);
 
-    BufferedImage imageBNW = new BufferedImage(width, height,
+    PixelBuffer imageBNW = PixelBuffer.create(width, height,
             BufferedImage.TYPE_INT_RGB);
+    int black = Color.BLACK.getRGB(), white = Color.WHITE.getRGB();
+    for(int y = 0; y < height; y++)
+      for(int x = 0; x < width; x++)
+        imageBNW.set(x, y, blackPixels.get(x, y) ? black : white);
+    return imageBNW.toImage();
+  }
+
+  /**
+   * The black and white version of `image' as a mask, the bits of the black pixels being set. Large images are
+   * dithered in parallel.
+   */
+  public static BitMask computeBlackAndWhiteMask(BufferedImage image){
+    boolean large = (long) image.getWidth() * image.getHeight() >= WAVEFRONT_PIXELS;
+    return computeBlackAndWhiteMask(image, large && RowBands.threads() > 1);
+  }
+
+  /**
+   * Error diffusion, row by row. With `wavefront' rows are dithered by several threads at once, each row trailing the
+   * one above by a couple of columns: a pixel only takes error from the pixel before it and the three pixels above it,
+   * so a row can go as far as the row above has gone less two. The result is the same either way.
+   */
+  public static BitMask computeBlackAndWhiteMask(BufferedImage image, boolean wavefront){
+    int width = image.getWidth();
+    int height = image.getHeight();
 
     int[] blackAndWhite = image.getRGB(0, 0, width, height, null, 0, width);
-    for(int i = 0; i <blackAndWhite .length; i++)
-      blackAndWhite[i] = getLuminosity(blackAndWhite[i]);
-
-    for(int x = 0; x < width; x++) {
-      for (int y = 0; y < height; y++) {
-        int xy = y * width + x;
-
-        if (blackAndWhite[xy] <= threshold) {
-          imageBNW.setRGB(x, y, Color.BLACK.getRGB());
-        } else {
-          imageBNW.setRGB(x, y, Color.WHITE.getRGB());
-          blackAndWhite[xy] -= threshold;
-        }
+    // getLuminosity of every pixel.
+    PixelKernels.get().luminosity(blackAndWhite, 0, blackAndWhite.length);
+    BitMask imageBNW = new BitMask(width, height);
+
+    if(!wavefront){
+      for(int y = 0; y < height; y++)
+        diffuse(blackAndWhite, width, height, y, 0, width, imageBNW);
+      return imageBNW;
+    }
 
-        if (blackAndWhite[xy] > 0) {
-          int cl = blackAndWhite[xy];
-          int cld = cl / 16;
-          int clm = cl % 16;
-          if (x + 1 < width && y < height) {
-              blackAndWhite[xy + 1] += clm;
-            } else if (x < width && y + 1 < height) {
-              blackAndWhite[xy + width] += clm;
-            }
-
-          if (x+1 < width) // (x+1, y)
-            blackAndWhite[xy + 1] += cld * 7;
-          if (x+1 < width && y+1 < height) // (x+1, y+1)
-            blackAndWhite[xy + 1 + width] += cld * 1;
-          if (y+1 < height) // (x, y+1)
-            blackAndWhite[xy + width] += cld * 5;
-          if (x - 1 >= 0 && y + 1 < height) // (x-1, y+1)
-            blackAndWhite[xy - 1 + width] += cld * 3;
+    // Columns of each row done so far. Rows are taken in order by whichever thread is free, and a row only waits for
+    // rows taken before it, which are being worked on, so the rows always get done whatever the number of threads.
+    AtomicIntegerArray done = new AtomicIntegerArray(height);
+    AtomicInteger nextRow = new AtomicInteger();
+    Runnable worker = () -> {
+      int y;
+      while((y = nextRow.getAndIncrement()) < height){
+        for(int from = 0; from < width; from += WAVEFRONT_COLUMNS){
+          int to = Math.min(width, from + WAVEFRONT_COLUMNS);
+          if(y > 0){
+            int needed = Math.min(width, to + 2);
+            while(done.get(y - 1) < needed)
+              Thread.yield();
+          }
+          diffuse(blackAndWhite, width, height, y, from, to, imageBNW);
+          done.set(y, to);
         }
       }
-    }
+    };
+    List<ForkJoinTask<?>> workers = new ArrayList<>();
+    for(int i = 0; i < Math.min(RowBands.threads(), height); i++)
+      workers.add(ForkJoinTask.adapt(worker));
+    ForkJoinTask.invokeAll(workers);
     return imageBNW;
   }
 
+  // Dithers columns from (inclusive) to to (exclusive) of row y, passing each pixel's error on to the pixels after it
+  // and below it.
+  private static void diffuse(int[] blackAndWhite, int width, int height, int y, int from, int to,
+                              BitMask imageBNW){
+    int threshold = BNW_THRESHOLD;
+    for(int x = from; x < to; x++) {
+      int xy = y * width + x;
+
+      if (blackAndWhite[xy] <= threshold) {
+        imageBNW.set(x, y);
+      } else {
+        blackAndWhite[xy] -= threshold;
+      }
+
+      if (blackAndWhite[xy] > 0) {
+        int cl = blackAndWhite[xy];
+        int cld = cl / 16;
+        int clm = cl % 16;
+        if (x + 1 < width && y < height) {
+            blackAndWhite[xy + 1] += clm;
+          } else if (x < width && y + 1 < height) {
+            blackAndWhite[xy + width] += clm;
+          }
+
+        if (x+1 < width) // (x+1, y)
+          blackAndWhite[xy + 1] += cld * 7;
+        if (x+1 < width && y+1 < height) // (x+1, y+1)
+          blackAndWhite[xy + 1 + width] += cld * 1;
+        if (y+1 < height) // (x, y+1)
+          blackAndWhite[xy + width] += cld * 5;
+        if (x - 1 >= 0 && y + 1 < height) // (x-1, y+1)
+          blackAndWhite[xy - 1 + width] += cld * 3;
+      }
+    }
+  }
+
+  /**
+   * A copy of `image' with pixels of its own, e.g. of a subimage that has to outlive the image it is part of.
+   */
+  public static BufferedImage copy(BufferedImage image){
+    ColorModel colorModel = image.getColorModel();
+    WritableRaster raster = colorModel.createCompatibleWritableRaster(image.getWidth(), image.getHeight());
+    image.copyData(raster);
+    return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+  }
+
+  /**
+   * Tests against the default threshold of 0.1. For any other threshold, make a ColourfulnessClassifier once and
+   * test every pixel with it.
+   */
   public static boolean isColor(int c){
-    return isColor(c, 0.1f);
+    return COLOUR.isColoured(c);
   }
 
+  /**
+   * @deprecated Looks the threshold's classifier up on every call. Make a ColourfulnessClassifier once and test every
+   * pixel with it instead.
+   */
+  @Deprecated
   public static boolean isColor(int c, float threshold){
-    double[] rgb = new double[]{getRed(c), getGreen(c), getBlue(c)};
-    double stdev = Stats.getStdDev(rgb);
-    return (stdev > threshold);
+    return COLOUR_BY_THRESHOLD.computeIfAbsent(threshold, ColourfulnessClassifier::new).isColoured(c);
   }
 
   public static int getLuminosity(int c){
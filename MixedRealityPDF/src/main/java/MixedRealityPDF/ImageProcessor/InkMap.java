@@ -0,0 +1,139 @@
+package MixedRealityPDF.ImageProcessor;
+
+import MixedRealityPDF.ImageProcessor.Binarization.GlobalBinarizer;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Which pixels of a page are black ink and which are coloured ink, with how many of each there are in every row and
+ * column. Everything is worked out in a single pass over the pixels, so that alignment, difference and whatever comes
+ * after can share one classification of a page instead of each testing the pixels again. A pixel that is neither is
+ * paper. Dark, saturated pixels can be both.
+ */
+public final class InkMap {
+
+  // Defaults used throughout the pipeline; see of(PixelBuffer, double, double).
+  public static final double BLACK_THRESHOLD = 0.2;
+  public static final double COLOUR_THRESHOLD = 0.1;
+
+  private final BitMask black, coloured;
+  private final int[] blackPerRow, blackPerColumn;
+  private final int[] colouredPerRow, colouredPerColumn;
+
+  private InkMap(BitMask black, BitMask coloured, int[] blackPerRow, int[] blackPerColumn,
+                 int[] colouredPerRow, int[] colouredPerColumn) {
+    this.black = black;
+    this.coloured = coloured;
+    this.blackPerRow = blackPerRow;
+    this.blackPerColumn = blackPerColumn;
+    this.colouredPerRow = colouredPerRow;
+    this.colouredPerColumn = colouredPerColumn;
+  }
+
+  public static InkMap of(BufferedImage image) {
+    return of(PixelBuffer.of(image), BLACK_THRESHOLD, COLOUR_THRESHOLD);
+  }
+
+  /**
+   * @param blackThreshold  a pixel is black iff its channels, as a vector, are shorter than sqrt(blackThreshold) times
+   *                        white's. The larger the threshold, the lighter the greys that count as black.
+   * @param colourThreshold a pixel is coloured iff the standard deviation of its channels, as a fraction of 255,
+   *                        exceeds colourThreshold. The larger the threshold, the more colourful a pixel has to be.
+   */
+  public static InkMap of(PixelBuffer pixels, double blackThreshold, double colourThreshold) {
+    int width = pixels.getWidth(), height = pixels.getHeight();
+    // r*r + g*g + b*b is a whole number, so being below the limit is the same as being below the limit rounded up.
+    int blackBelow = (int) Math.min(Integer.MAX_VALUE, Math.ceil(blackThreshold * Math.pow(255, 2) * 3));
+    int colouredAbove = ColourfulnessClassifier.ofFraction(colourThreshold).colouredAbove();
+    int[] argb = pixels.data();
+    BitMask black = new BitMask(width, height), coloured = new BitMask(width, height);
+    int[] blackPerRow = new int[height], colouredPerRow = new int[height];
+    // Bands count their own columns, which are added up once all bands are done.
+    int[][] perColumn = RowBands.reduce(height, (from, to) -> {
+      int[] blackPerColumn = new int[width], colouredPerColumn = new int[width];
+      PixelKernels kernels = PixelKernels.get();
+      for (int y = from; y < to; y++) {
+        kernels.classifyInk(argb, y * width, width, blackBelow, colouredAbove, black.words(), coloured.words(),
+                black.rowOffset(y));
+        blackPerRow[y] = black.rowCardinality(y);
+        colouredPerRow[y] = coloured.rowCardinality(y);
+      }
+      // Ink is sparse, so columns are counted from the set bits rather than from every pixel.
+      black.forEach(from, to, (x, y) -> blackPerColumn[x]++);
+      coloured.forEach(from, to, (x, y) -> colouredPerColumn[x]++);
+      return new int[][]{blackPerColumn, colouredPerColumn};
+    }, InkMap::addColumns);
+    return new InkMap(black, coloured, blackPerRow, perColumn[0], colouredPerRow, perColumn[1]);
+  }
+
+  /**
+   * Same as of(pixels, blackThreshold, colourThreshold), with `binarizer' deciding which pixels are black.
+   */
+  public static InkMap of(PixelBuffer pixels, IBinarizer binarizer, double colourThreshold) {
+    // A global threshold is what the single pass above does anyway.
+    if (binarizer instanceof GlobalBinarizer)
+      return of(pixels, ((GlobalBinarizer) binarizer).getThreshold(), colourThreshold);
+    ColourfulnessClassifier colourful = ColourfulnessClassifier.ofFraction(colourThreshold);
+    return of(binarizer.binarize(pixels), BitMask.where(pixels, colourful::isColoured));
+  }
+
+  // Adds the column counts of a lower band to those of an upper one.
+  private static int[][] addColumns(int[][] upper, int[][] lower) {
+    for (int x = 0; x < upper[0].length; x++) {
+      upper[0][x] += lower[0][x];
+      upper[1][x] += lower[1][x];
+    }
+    return upper;
+  }
+
+  /**
+   * @return The map with the given masks, e.g. as kept by a PageAnalysis. The masks are used, not copied.
+   */
+  public static InkMap of(BitMask black, BitMask coloured) {
+    int[] blackPerRow = new int[black.getHeight()], blackPerColumn = new int[black.getWidth()];
+    int[] colouredPerRow = new int[coloured.getHeight()], colouredPerColumn = new int[coloured.getWidth()];
+    project(black, blackPerRow, blackPerColumn);
+    project(coloured, colouredPerRow, colouredPerColumn);
+    return new InkMap(black, coloured, blackPerRow, blackPerColumn, colouredPerRow, colouredPerColumn);
+  }
+
+  private static void project(BitMask mask, int[] perRow, int[] perColumn) {
+    for (int y = 0; y < perRow.length; y++)
+      perRow[y] = mask.rowCardinality(y);
+    mask.forEach((x, y) -> perColumn[x]++);
+  }
+
+  public int getWidth() {
+    return black.getWidth();
+  }
+
+  public int getHeight() {
+    return black.getHeight();
+  }
+
+  // The masks and projections are shared, not copied: callers must not change them.
+
+  public BitMask getBlack() {
+    return black;
+  }
+
+  public BitMask getColoured() {
+    return coloured;
+  }
+
+  public int[] getBlackPerRow() {
+    return blackPerRow;
+  }
+
+  public int[] getBlackPerColumn() {
+    return blackPerColumn;
+  }
+
+  public int[] getColouredPerRow() {
+    return colouredPerRow;
+  }
+
+  public int[] getColouredPerColumn() {
+    return colouredPerColumn;
+  }
+}
@@ -0,0 +1,13 @@
+package MixedRealityPDF.ImageProcessor;
+
+/**
+ * Picks the PixelKernels implementation. Java 8 version: there is only the scalar one.
+ */
+final class KernelLoader {
+
+  private KernelLoader() {}
+
+  static PixelKernels load() {
+    return new PixelKernels();
+  }
+}
@@ -0,0 +1,146 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Page-sized images that the pipeline's stages lease for their output and give back once the next stage is done with
+ * them, so that every page doesn't allocate (and the collector then has to reclaim) a handful of humongous arrays.
+ *
+ * Only images the pool itself leased out are taken back, so a stage may give back whatever image it was handed
+ * without knowing where it came from: one that belongs to a caller, or that a pluggable stage made and may still be
+ * using, is left alone. Of those, only TYPE_INT_RGB and TYPE_INT_ARGB images that aren't subimages are kept; anything
+ * else given back is left to the collector. Images that have been given back are kept until they add up to more than
+ * the pool's capacity, after which the ones given back longest ago are dropped. Safe to use from several threads.
+ *
+ * An image must not be used once it has been given back, nor given back while anything else (a subimage, an
+ * annotation, a debug sink still writing it) may refer to it.
+ */
+public final class PageBufferPool {
+
+  private static final PageBufferPool SHARED = new PageBufferPool(Runtime.getRuntime().maxMemory() / 8);
+
+  private final long capacity;
+  // Free images, most recently given back first.
+  private final LinkedList<BufferedImage> free = new LinkedList<>();
+  // Images out on lease. Weak, so that one never given back is still collected; BufferedImage compares by identity.
+  private final Map<BufferedImage, Boolean> leased = new WeakHashMap<>();
+  private long bytes = 0;
+
+  /**
+   * @param capacity bytes of free images to keep at most
+   */
+  public PageBufferPool(long capacity) {
+    this.capacity = capacity;
+  }
+
+  /**
+   * @return The pool used by the pipeline's stages, which keeps up to an eighth of the maximum heap.
+   */
+  public static PageBufferPool shared() {
+    return SHARED;
+  }
+
+  /**
+   * @return An image as made by new BufferedImage(width, height, type), except that its pixels may be anything.
+   */
+  public BufferedImage lease(int width, int height, int type) {
+    synchronized (free) {
+      for (Iterator<BufferedImage> it = free.iterator(); it.hasNext(); ) {
+        BufferedImage image = it.next();
+        if (image.getWidth() == width && image.getHeight() == height && image.getType() == type) {
+          it.remove();
+          bytes -= bytes(image);
+          leased.put(image, Boolean.TRUE);
+          return image;
+        }
+      }
+    }
+    BufferedImage image = new BufferedImage(width, height, type);
+    synchronized (free) {
+      leased.put(image, Boolean.TRUE);
+    }
+    return image;
+  }
+
+  /**
+   * @return Same as lease(width, height, type), with every pixel set to `argb' as setRGB would set it.
+   */
+  public BufferedImage lease(int width, int height, int type, int argb) {
+    BufferedImage image = lease(width, height, type);
+    fill(image, argb);
+    return image;
+  }
+
+  /**
+   * Gives `image' back to the pool. Does nothing if image is null, wasn't leased from this pool, or has already been
+   * given back.
+   */
+  public void release(BufferedImage image) {
+    if (image == null)
+      return;
+    synchronized (free) {
+      if (leased.remove(image) == null || !isPoolable(image))
+        return;
+      free.addFirst(image);
+      bytes += bytes(image);
+      while (bytes > capacity && !free.isEmpty())
+        bytes -= bytes(free.removeLast());
+    }
+  }
+
+  /**
+   * @return Bytes of free images held.
+   */
+  public long getBytes() {
+    synchronized (free) {
+      return bytes;
+    }
+  }
+
+  /**
+   * Drops every free image.
+   */
+  public void clear() {
+    synchronized (free) {
+      free.clear();
+      bytes = 0;
+    }
+  }
+
+  /**
+   * Sets every pixel of `image' to `argb', as setRGB would set it, in one pass over the image's array where it has one.
+   */
+  public static void fill(BufferedImage image, int argb) {
+    if (isPoolable(image)) {
+      // The value setRGB would store, e.g. without alpha for TYPE_INT_RGB.
+      int stored = ((int[]) image.getColorModel().getDataElements(argb, null))[0];
+      Arrays.fill(((DataBufferInt) image.getRaster().getDataBuffer()).getData(), stored);
+      return;
+    }
+    int width = image.getWidth();
+    int[] row = new int[width];
+    Arrays.fill(row, argb);
+    for (int y = 0; y < image.getHeight(); y++)
+      image.setRGB(0, y, width, 1, row, 0, width);
+  }
+
+  // Images whose pixels are exactly the whole of an int array, which PixelBuffer also works on in place.
+  private static boolean isPoolable(BufferedImage image) {
+    int type = image.getType();
+    return (type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+            && image.getRaster().getDataBuffer() instanceof DataBufferInt
+            && image.getRaster().getParent() == null
+            && ((DataBufferInt) image.getRaster().getDataBuffer()).getData().length
+               == image.getWidth() * image.getHeight();
+  }
+
+  private static long bytes(BufferedImage image) {
+    return 4L * image.getWidth() * image.getHeight();
+  }
+}
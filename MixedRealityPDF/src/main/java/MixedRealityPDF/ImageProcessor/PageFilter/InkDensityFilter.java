@@ -0,0 +1,115 @@
+package MixedRealityPDF.ImageProcessor.PageFilter;
+
+import MixedRealityPDF.ImageProcessor.IPageFilter;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.function.Predicate;
+
+/**
+ * Judges a scan clean when, compared with the original, it neither has more coloured pixels of any hue nor more dark
+ * pixels in any region of the page. Only every step'th pixel in each direction is looked at, and regions are coarse
+ * enough that a scan which has not been aligned yet still lines up with the original well enough.
+ */
+public class InkDensityFilter implements IPageFilter {
+
+    // The page is split into GRID x GRID regions for the ink density test.
+    private static final int GRID = 8;
+    private static final int HUE_BINS = 12;
+
+    // A pixel is coloured if its channels differ by more than this.
+    private static final int COLOUR_SPREAD = 64;
+    // A pixel that isn't coloured is ink if its channels add up to less than this.
+    private static final int DARK_SUM = 3 * 128;
+
+    private final int step;
+    private final double colourFraction;
+    private final double inkDelta;
+
+    public InkDensityFilter() {
+        this(2, 0.0005, 0.03);
+    }
+
+    /**
+     * @param step              distance between the pixels sampled
+     * @param colourFraction    a scan is annotated if, for some hue, the fraction of sampled pixels that are coloured
+     *                          with that hue exceeds the original's by more than this
+     * @param inkDelta          a scan is annotated if, in some region, the fraction of sampled pixels that are ink
+     *                          exceeds the original's by more than this
+     */
+    public InkDensityFilter(int step, double colourFraction, double inkDelta) {
+        if (step < 1)
+            throw new IllegalArgumentException("step must be at least 1");
+        this.step = step;
+        this.colourFraction = colourFraction;
+        this.inkDelta = inkDelta;
+    }
+
+    @Override
+    public boolean mayBeAnnotated(BufferedImage original, BufferedImage modified) {
+        return prepare(original).test(modified);
+    }
+
+    @Override
+    public Predicate<BufferedImage> prepare(BufferedImage original) {
+        Profile originalProfile = new Profile(original, step);
+        return modified -> {
+            Profile scanProfile = new Profile(modified, step);
+            for (int i = 0; i < HUE_BINS; i++) {
+                if (scanProfile.hues[i] - originalProfile.hues[i] > colourFraction)
+                    return true;
+            }
+            // Scanning and rescaling make every stroke a little heavier or lighter, so the original's ink is first
+            // scaled by how much heavier the scan's is overall.
+            double weight = originalProfile.totalInk == 0 ? 1 : scanProfile.totalInk / originalProfile.totalInk;
+            for (int i = 0; i < GRID * GRID; i++) {
+                if (scanProfile.ink[i] - weight * originalProfile.ink[i] > inkDelta)
+                    return true;
+            }
+            return false;
+        };
+    }
+
+    // Downsampled summary of a page: how much of it is coloured with each hue, and how much of each region is ink.
+    private static final class Profile {
+        final double[] hues = new double[HUE_BINS];
+        final double[] ink = new double[GRID * GRID];
+        final double totalInk;
+
+        Profile(BufferedImage image, int step) {
+            int width = image.getWidth(), height = image.getHeight();
+            int[] samplesPerRegion = new int[GRID * GRID];
+            int samples = 0;
+            int[] row = new int[width];
+            float[] hsb = new float[3];
+            for (int y = 0; y < height; y += step) {
+                image.getRGB(0, y, width, 1, row, 0, width);
+                int regionRow = y * GRID / height * GRID;
+                for (int x = 0; x < width; x += step) {
+                    int rgb = row[x];
+                    int r = (rgb >> 16) & 0xff, g = (rgb >> 8) & 0xff, b = rgb & 0xff;
+                    int region = regionRow + x * GRID / width;
+                    samples++;
+                    samplesPerRegion[region]++;
+                    // Transparent pixels are background, whatever their colour channels say.
+                    if ((rgb >>> 24) < 128)
+                        continue;
+                    if (Math.max(r, Math.max(g, b)) - Math.min(r, Math.min(g, b)) > COLOUR_SPREAD) {
+                        Color.RGBtoHSB(r, g, b, hsb);
+                        hues[(int) (hsb[0] * HUE_BINS) % HUE_BINS]++;
+                    } else if (r + g + b < DARK_SUM) {
+                        ink[region]++;
+                    }
+                }
+            }
+            for (int i = 0; i < HUE_BINS; i++)
+                hues[i] /= Math.max(1, samples);
+            double total = 0;
+            for (int i = 0; i < ink.length; i++) {
+                total += ink[i];
+                ink[i] /= Math.max(1, samplesPerRegion[i]);
+            }
+            totalInk = total / Math.max(1, samples);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * The pixels of a BufferedImage as one row-major int[] of ARGB values, for loops that would otherwise call getRGB and
+ * setRGB (and usually make a Color) for every pixel.
+ *
+ * TYPE_INT_RGB and TYPE_INT_ARGB images that aren't subimages are used in place: reads and writes go straight to the
+ * image's DataBuffer. Any other image (PDFBox's TYPE_CUSTOM renders, byte-based types, subimages) is converted once when
+ * the buffer is made, and written back by toImage(). Either way get() returns exactly what getRGB() would and set()
+ * does what setRGB() would.
+ */
+public final class PixelBuffer {
+
+  private final BufferedImage image;
+  private final int[] data;
+  private final int width, height;
+  // False if data is a copy that has to be written back to the image.
+  private final boolean direct;
+  // ORed into every pixel read, so that images without alpha read as opaque like getRGB() does.
+  private final int opaque;
+
+  private PixelBuffer(BufferedImage image, int[] data, boolean direct, int opaque) {
+    this.image = image;
+    this.data = data;
+    this.width = image.getWidth();
+    this.height = image.getHeight();
+    this.direct = direct;
+    this.opaque = opaque;
+  }
+
+  /**
+   * @return A buffer over the pixels of `image'. Writes reach `image' once toImage() is called.
+   */
+  public static PixelBuffer of(BufferedImage image) {
+    if (isDirect(image)) {
+      int[] data = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+      return new PixelBuffer(image, data, true, image.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0);
+    }
+    int w = image.getWidth(), h = image.getHeight();
+    return new PixelBuffer(image, image.getRGB(0, 0, w, h, null, 0, w), false, 0);
+  }
+
+  /**
+   * @return A buffer over a new image, as made by new BufferedImage(width, height, imageType).
+   */
+  public static PixelBuffer create(int width, int height, int imageType) {
+    return of(new BufferedImage(width, height, imageType));
+  }
+
+  private static boolean isDirect(BufferedImage image) {
+    int type = image.getType();
+    if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB)
+      return false;
+    WritableRaster raster = image.getRaster();
+    if (!(raster.getDataBuffer() instanceof DataBufferInt)
+            || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel))
+      return false;
+    SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+    return sm.getScanlineStride() == image.getWidth()
+            && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+            && raster.getDataBuffer().getOffset() == 0;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * @return The ARGB value of pixel (x, y).
+   */
+  public int get(int x, int y) {
+    return data[y * width + x] | opaque;
+  }
+
+  /**
+   * @return The ARGB value of the pixel at `index' = y * getWidth() + x.
+   */
+  public int get(int index) {
+    return data[index] | opaque;
+  }
+
+  /**
+   * Copies the ARGB values of row y into argb[offset] on.
+   */
+  public void getRow(int y, int[] argb, int offset) {
+    for (int x = 0, i = y * width; x < width; x++, i++)
+      argb[offset + x] = data[i] | opaque;
+  }
+
+  public void set(int x, int y, int argb) {
+    data[y * width + x] = argb;
+  }
+
+  public void set(int index, int argb) {
+    data[index] = argb;
+  }
+
+  // The pixels, as used by PixelKernels: pixel (x, y) is data()[y * getWidth() + x] | opaque().
+
+  int[] data() {
+    return data;
+  }
+
+  int opaque() {
+    return opaque;
+  }
+
+  /**
+   * @return The image this buffer belongs to, with everything written to the buffer in it.
+   */
+  public BufferedImage toImage() {
+    if (!direct)
+      image.setRGB(0, 0, width, height, data, 0, width);
+    return image;
+  }
+
+  public static int alpha(int argb) {
+    return argb >>> 24;
+  }
+
+  public static int red(int argb) {
+    return (argb >> 16) & 0xFF;
+  }
+
+  public static int green(int argb) {
+    return (argb >> 8) & 0xFF;
+  }
+
+  public static int blue(int argb) {
+    return argb & 0xFF;
+  }
+
+  public static int argb(int a, int r, int g, int b) {
+    return (a << 24) | (r << 16) | (g << 8) | b;
+  }
+}
@@ -0,0 +1,92 @@
+package MixedRealityPDF.ImageProcessor;
+
+/**
+ * The innermost loops of the busiest pixel kernels, over plain arrays of packed ARGB pixels or mask words, so that
+ * they can be swapped for faster versions where the JVM allows it.
+ *
+ * This is the scalar version, used on Java 8. Built as a multi-release jar and run on Java 17 with
+ * --add-modules jdk.incubator.vector, get() returns a subclass that does the same with SIMD instructions; without the
+ * module, or with -DMixedRealityPDF.vectorKernels=false, it returns this. Either way every method gives exactly the
+ * same results.
+ */
+public class PixelKernels {
+
+  private static final PixelKernels INSTANCE = KernelLoader.load();
+
+  protected PixelKernels() {}
+
+  public static PixelKernels get() {
+    return INSTANCE;
+  }
+
+  /**
+   * @return What kind of kernels these are, e.g. for logging.
+   */
+  public String getName() {
+    return "scalar";
+  }
+
+  /**
+   * Classifies `length' pixels from argb[offset] on as black and/or coloured ink, setting bit x % 64 of
+   * black[wordOffset + x / 64] and coloured[wordOffset + x / 64] for the pixel at argb[offset + x]. Bits of other pixels
+   * are left as they are.
+   *
+   * @param blackBelow    a pixel is black iff r*r + g*g + b*b < blackBelow
+   * @param colouredAbove a pixel is coloured iff (r-g)^2 + (g-b)^2 + (r-b)^2 > colouredAbove
+   */
+  public void classifyInk(int[] argb, int offset, int length, int blackBelow, int colouredAbove,
+                          long[] black, long[] coloured, int wordOffset) {
+    for (int x = 0; x < length; x++) {
+      int rgb = argb[offset + x];
+      int r = (rgb >> 16) & 0xFF, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+      if (r * r + g * g + b * b < blackBelow)
+        black[wordOffset + (x >>> 6)] |= 1L << x;
+      if ((r - g) * (r - g) + (g - b) * (g - b) + (r - b) * (r - b) > colouredAbove)
+        coloured[wordOffset + (x >>> 6)] |= 1L << x;
+    }
+  }
+
+  /**
+   * For each of `length' pixels, out[outOffset + x] = (a[aOffset + x] | aOpaque) if the squared Euclidian distance
+   * between the RGB channels of a[aOffset + x] and b[bOffset + x] is at least minSquaredDistance, and `fill' otherwise.
+   */
+  public void selectDifferent(int[] a, int aOffset, int aOpaque, int[] b, int bOffset, int length,
+                              int minSquaredDistance, int[] out, int outOffset, int fill) {
+    for (int x = 0; x < length; x++) {
+      int p = a[aOffset + x], q = b[bOffset + x];
+      int dr = ((p >> 16) & 0xFF) - ((q >> 16) & 0xFF);
+      int dg = ((p >> 8) & 0xFF) - ((q >> 8) & 0xFF);
+      int db = (p & 0xFF) - (q & 0xFF);
+      out[outOffset + x] = dr * dr + dg * dg + db * db >= minSquaredDistance ? p | aOpaque : fill;
+    }
+  }
+
+  /**
+   * selectDifferent on the first `width' pixels of row y of `a', `b' and `out'.
+   */
+  public final void selectDifferent(PixelBuffer a, PixelBuffer b, int y, int width, int minSquaredDistance,
+                                    PixelBuffer out, int fill) {
+    selectDifferent(a.data(), y * a.getWidth(), a.opaque(), b.data(), y * b.getWidth(), width, minSquaredDistance,
+            out.data(), y * out.getWidth(), fill);
+  }
+
+  /**
+   * Replaces each of `length' pixels from argb[offset] on with the sum of its red, green and blue channels.
+   */
+  public void luminosity(int[] argb, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      int rgb = argb[i];
+      argb[i] = ((rgb >> 16) & 0xFF) + ((rgb >> 8) & 0xFF) + (rgb & 0xFF);
+    }
+  }
+
+  /**
+   * @return The number of set bits in words[from] to words[to - 1].
+   */
+  public long bitCount(long[] words, int from, int to) {
+    long count = 0;
+    for (int i = from; i < to; i++)
+      count += Long.bitCount(words[i]);
+    return count;
+  }
+}
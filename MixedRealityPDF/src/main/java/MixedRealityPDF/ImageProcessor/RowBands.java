@@ -0,0 +1,91 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Runs a per-pixel kernel over an image in bands of whole rows, in parallel on a ForkJoinPool, and combines what each
+ * band returns (counts, extents, histograms, ...).
+ *
+ * Called from a worker of a ForkJoinPool, e.g. one processing pages, the bands run in that same pool, so page-level
+ * and pixel-level parallelism share its threads instead of each bringing their own. Called from any other thread, the
+ * bands run in the common pool. With a single thread to run on, the kernel is just called once for all the rows.
+ *
+ * Bands never share a row, so kernels may write to their own rows of a PixelBuffer, a BitMask or a per-row array
+ * without synchronizing. Anything else they write to has to be per-band and combined.
+ */
+public final class RowBands {
+
+  /** Processes rows fromRow (inclusive) to toRow (exclusive). */
+  public interface Kernel {
+    void run(int fromRow, int toRow);
+  }
+
+  /** Processes rows fromRow (inclusive) to toRow (exclusive) and returns what it found. */
+  public interface BandFunction<T> {
+    T apply(int fromRow, int toRow);
+  }
+
+  // A band is never split below this many rows, so that every task is worth forking.
+  private static final int MIN_ROWS = 32;
+  // Bands per thread, so that threads which finish early can take over work from the others.
+  private static final int BANDS_PER_THREAD = 4;
+
+  private RowBands() {}
+
+  public static void forEach(int rows, Kernel kernel) {
+    reduce(rows, (from, to) -> {
+      kernel.run(from, to);
+      return null;
+    }, (a, b) -> null);
+  }
+
+  /**
+   * @param combine combines the results of two neighbouring bands, the upper one first, so that combining in row order
+   *                is preserved
+   * @return The result of combining the results of all the bands, which together cover rows 0 to `rows'.
+   */
+  public static <T> T reduce(int rows, BandFunction<T> band, BinaryOperator<T> combine) {
+    int threads = threads();
+    int grain = Math.max(MIN_ROWS, (rows + threads * BANDS_PER_THREAD - 1) / (threads * BANDS_PER_THREAD));
+    if (threads == 1 || rows <= grain)
+      return band.apply(0, rows);
+    return new BandTask<>(0, rows, grain, band, combine).invoke();
+  }
+
+  // Threads that will run the bands: those of the pool this is called from, or the processors the common pool and
+  // the caller share.
+  static int threads() {
+    ForkJoinPool pool = ForkJoinTask.getPool();
+    return pool != null ? pool.getParallelism() : Runtime.getRuntime().availableProcessors();
+  }
+
+  private static final class BandTask<T> extends RecursiveTask<T> {
+    private static final long serialVersionUID = 1L;
+
+    private final int from, to, grain;
+    private final BandFunction<T> band;
+    private final BinaryOperator<T> combine;
+
+    BandTask(int from, int to, int grain, BandFunction<T> band, BinaryOperator<T> combine) {
+      this.from = from;
+      this.to = to;
+      this.grain = grain;
+      this.band = band;
+      this.combine = combine;
+    }
+
+    @Override
+    protected T compute() {
+      if (to - from <= grain)
+        return band.apply(from, to);
+      int mid = (from + to) >>> 1;
+      BandTask<T> lower = new BandTask<>(mid, to, grain, band, combine);
+      lower.fork();
+      T upper = new BandTask<>(from, mid, grain, band, combine).compute();
+      return combine.apply(upper, lower.join());
+    }
+  }
+}
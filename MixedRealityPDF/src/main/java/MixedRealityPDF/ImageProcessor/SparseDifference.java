@@ -0,0 +1,273 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * The difference between a scan and its original kept as runs, row by row, of the pixels that differ, with the colour
+ * of each. A difference is nearly all blank (the pixels the scan shares with the original), so this takes memory, and
+ * anything that looks through it takes time, in proportion to the ink added rather than to the page. Immutable.
+ *
+ * A pixel is blank if it is fully transparent or opaque white, i.e. whatever a difference map sets pixels that are the
+ * same to, whether its image has alpha or not.
+ */
+public final class SparseDifference {
+
+  /** Supplies the pixels of a difference a row at a time; see of(int, int, int, RowSource). */
+  public interface RowSource {
+    /**
+     * Sets argb[0] to argb[width - 1] to the ARGB values of row y, as getRGB would return them. Called from several
+     * threads at once, for different rows and with different arrays.
+     */
+    void row(int y, int[] argb);
+  }
+
+  /** Receives the spans of a difference. */
+  public interface SpanConsumer {
+    /**
+     * @param x       the span's first pixel
+     * @param y       the span's row
+     * @param length  number of pixels in the span
+     * @param colours ARGB values of the span's pixels, from colours[offset] on. Must not be changed.
+     */
+    void accept(int x, int y, int length, int[] colours, int offset);
+  }
+
+  // What blank pixels are turned back into: transparent white, as the difference maps use, which reads as opaque white
+  // from an image without alpha.
+  public static final int BLANK = 0x00FFFFFF;
+
+  private final int width, height, type;
+  // Spans of row y are spanX[rowSpans[y]] to spanX[rowSpans[y + 1] - 1], in order; the colours of their pixels start
+  // at colours[rowColours[y]].
+  private final int[] rowSpans, rowColours;
+  private final int[] spanX, spanLength;
+  private final int[] colours;
+
+  private SparseDifference(int width, int height, int type, int[] rowSpans, int[] rowColours, int[] spanX,
+                           int[] spanLength, int[] colours) {
+    this.width = width;
+    this.height = height;
+    this.type = type;
+    this.rowSpans = rowSpans;
+    this.rowColours = rowColours;
+    this.spanX = spanX;
+    this.spanLength = spanLength;
+    this.colours = colours;
+  }
+
+  public static boolean isBlank(int argb) {
+    return (argb >>> 24) == 0 || argb == -1;
+  }
+
+  /**
+   * @return The pixels of `image' that aren't blank. toImage() gives an image of the same type back if `image' is
+   * TYPE_INT_RGB or TYPE_INT_ARGB, and a TYPE_INT_ARGB image if not.
+   */
+  public static SparseDifference of(BufferedImage image) {
+    PixelBuffer pixels = PixelBuffer.of(image);
+    int type = image.getType() == BufferedImage.TYPE_INT_RGB ? BufferedImage.TYPE_INT_RGB
+            : BufferedImage.TYPE_INT_ARGB;
+    return of(pixels.getWidth(), pixels.getHeight(), type, (y, argb) -> pixels.getRow(y, argb, 0));
+  }
+
+  /**
+   * @param type TYPE_INT_RGB or TYPE_INT_ARGB, the type of the images toImage() makes
+   * @param rows the pixels, e.g. as a difference map works them out. Only a row of them is held at a time (per thread;
+   *             rows are asked for in parallel, see RowBands).
+   * @return The pixels that `rows' gives that aren't blank.
+   */
+  public static SparseDifference of(int width, int height, int type, RowSource rows) {
+    return of(width, height, type, () -> rows);
+  }
+
+  /**
+   * Same as of(int, int, int, RowSource), asking for a RowSource of its own for each band of rows. A band's rows are
+   * all asked for on one thread, so its RowSource can keep scratch arrays for them rather than make them every row.
+   */
+  public static SparseDifference of(int width, int height, int type, Supplier<RowSource> bands) {
+    if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB)
+      throw new IllegalArgumentException("Differences are TYPE_INT_RGB or TYPE_INT_ARGB, not type " + type);
+    Band all = RowBands.reduce(height, (from, to) -> {
+      Band band = new Band(from, to);
+      RowSource rows = bands.get();
+      int[] argb = new int[width];
+      for (int y = from; y < to; y++) {
+        rows.row(y, argb);
+        band.add(y, argb, width);
+      }
+      return band;
+    }, Band::append);
+    int[] rowSpans = new int[height + 1], rowColours = new int[height + 1];
+    for (int y = 0; y < height; y++) {
+      rowSpans[y + 1] = rowSpans[y] + all.spansPerRow[y];
+      rowColours[y + 1] = rowColours[y] + all.coloursPerRow[y];
+    }
+    return new SparseDifference(width, height, type, rowSpans, rowColours, all.spanX.toArray(),
+            all.spanLength.toArray(), all.colours.toArray());
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getType() {
+    return type;
+  }
+
+  /**
+   * @return The number of pixels that aren't blank.
+   */
+  public int getPixelCount() {
+    return colours.length;
+  }
+
+  public int getSpanCount() {
+    return spanX.length;
+  }
+
+  public boolean isEmpty() {
+    return colours.length == 0;
+  }
+
+  /**
+   * @return The ARGB value of pixel (x, y), BLANK if it is blank.
+   */
+  public int get(int x, int y) {
+    int from = rowSpans[y], to = rowSpans[y + 1];
+    // The last span starting at or before x.
+    int span = Arrays.binarySearch(spanX, from, to, x);
+    if (span < 0)
+      span = -span - 2;
+    if (span < from || x >= spanX[span] + spanLength[span])
+      return BLANK;
+    int offset = rowColours[y];
+    for (int s = from; s < span; s++)
+      offset += spanLength[s];
+    return colours[offset + x - spanX[span]];
+  }
+
+  /**
+   * Calls `consumer' with every span, row by row and from left to right in each row.
+   */
+  public void forEachSpan(SpanConsumer consumer) {
+    for (int y = 0; y < height; y++)
+      forEachSpan(y, consumer);
+  }
+
+  /**
+   * Calls `consumer' with the spans of row y, from left to right.
+   */
+  public void forEachSpan(int y, SpanConsumer consumer) {
+    int offset = rowColours[y];
+    for (int s = rowSpans[y]; s < rowSpans[y + 1]; s++) {
+      consumer.accept(spanX[s], y, spanLength[s], colours, offset);
+      offset += spanLength[s];
+    }
+  }
+
+  /**
+   * @return An image of the difference, leased from PageBufferPool.shared(), with blank pixels set to BLANK. The caller
+   * may give it back once done with it.
+   */
+  public BufferedImage toImage() {
+    PixelBuffer out = PixelBuffer.of(PageBufferPool.shared().lease(width, height, type, BLANK));
+    RowBands.forEach(height, (from, to) -> {
+      for (int y = from; y < to; y++) {
+        forEachSpan(y, (x, row, length, argb, offset) -> {
+          for (int i = 0; i < length; i++)
+            out.set(x + i, row, argb[offset + i]);
+        });
+      }
+    });
+    return out.toImage();
+  }
+
+  /**
+   * @return Bytes the difference holds.
+   */
+  public long bytes() {
+    return 4L * (rowSpans.length + rowColours.length + spanX.length + spanLength.length + colours.length);
+  }
+
+  // The spans found in a band of rows, or in several neighbouring bands once appended.
+  private static final class Band {
+    final IntList spanX = new IntList(), spanLength = new IntList(), colours = new IntList();
+    int[] spansPerRow, coloursPerRow;
+    // The band's first row.
+    final int from;
+
+    Band(int from, int to) {
+      this.from = from;
+      spansPerRow = new int[to - from];
+      coloursPerRow = new int[to - from];
+    }
+
+    void add(int y, int[] argb, int width) {
+      for (int x = 0; x < width; ) {
+        if (isBlank(argb[x])) {
+          x++;
+          continue;
+        }
+        int start = x;
+        while (x < width && !isBlank(argb[x]))
+          x++;
+        spanX.add(start);
+        spanLength.add(x - start);
+        colours.add(argb, start, x - start);
+        spansPerRow[y - from]++;
+        coloursPerRow[y - from] += x - start;
+      }
+    }
+
+    // Adds the spans of the band below this one.
+    Band append(Band lower) {
+      spanX.add(lower.spanX);
+      spanLength.add(lower.spanLength);
+      colours.add(lower.colours);
+      spansPerRow = concat(spansPerRow, lower.spansPerRow);
+      coloursPerRow = concat(coloursPerRow, lower.coloursPerRow);
+      return this;
+    }
+
+    private static int[] concat(int[] upper, int[] lower) {
+      int[] both = Arrays.copyOf(upper, upper.length + lower.length);
+      System.arraycopy(lower, 0, both, upper.length, lower.length);
+      return both;
+    }
+  }
+
+  private static final class IntList {
+    private int[] values = new int[16];
+    private int size = 0;
+
+    void add(int value) {
+      grow(1);
+      values[size++] = value;
+    }
+
+    void add(int[] from, int offset, int length) {
+      grow(length);
+      System.arraycopy(from, offset, values, size, length);
+      size += length;
+    }
+
+    void add(IntList other) {
+      add(other.values, 0, other.size);
+    }
+
+    private void grow(int by) {
+      if (size + by > values.length)
+        values = Arrays.copyOf(values, Math.max(size + by, 2 * values.length));
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+}
@@ -0,0 +1,306 @@
+package MixedRealityPDF;
+
+import MixedRealityPDF.ImageProcessor.Alignment.PageAnalysis;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Rendered and analysed pages of original PDFs, kept so that submitting the
+ * same original again skips rendering and analysis. Pages are keyed by the
+ * SHA-256 of the PDF's bytes, the page index and the DPI it was rendered
+ * at, so a renamed copy of an original still hits the cache.
+ *
+ * There are two tiers: an LRU map on the heap bounded by the number of
+ * bytes its pages hold, and, optionally, a directory of files, which
+ * outlives the JVM. A page found only on disk is read back onto the heap,
+ * since the pipeline needs it as an image there anyway. A file that isn't a
+ * whole page, e.g. one cut short by a crash, counts as a miss and is
+ * deleted. One cache may be shared by any number of jobs and threads.
+ */
+public final class OriginalPageCache {
+
+  // File layout version. Files with any other value are ignored.
+  private static final int MAGIC = 0x4d525032;
+  // Magic, width and height.
+  private static final int HEADER_BYTES = 3 * 4;
+  // Pixels and PDFs are read through a buffer of this many bytes at a time.
+  private static final int CHUNK_BYTES = 1 << 16;
+
+  /** A rendered page of an original and the analysis of it. */
+  public static final class Entry {
+    private final BufferedImage image;
+    private final PageAnalysis analysis;
+
+    public Entry(BufferedImage image, PageAnalysis analysis) {
+      this.image = image;
+      this.analysis = analysis;
+    }
+
+    public BufferedImage getImage() {
+      return image;
+    }
+
+    public PageAnalysis getAnalysis() {
+      return analysis;
+    }
+
+    private long bytes() {
+      return 4L * image.getWidth() * image.getHeight()
+              + analysis.serializedSize();
+    }
+  }
+
+  private static final class Key {
+    private final String pdfHash;
+    private final int page;
+    private final float dpi;
+
+    Key(String pdfHash, int page, float dpi) {
+      this.pdfHash = pdfHash;
+      this.page = page;
+      this.dpi = dpi;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key))
+        return false;
+      Key other = (Key) o;
+      return page == other.page && dpi == other.dpi
+              && pdfHash.equals(other.pdfHash);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(pdfHash, page, dpi);
+    }
+
+    // The DPI's exact bits, so that DPIs which round alike never share a
+    // file (and give back a page of the wrong size).
+    String fileName() {
+      return pdfHash + "-" + page + "-"
+              + Integer.toHexString(Float.floatToIntBits(dpi)) + ".page";
+    }
+  }
+
+  private final long maxMemoryBytes;
+  private final File directory;
+  private final LinkedHashMap<Key, Entry> memory =
+          new LinkedHashMap<>(16, 0.75f, true);
+  private long memoryBytes = 0;
+
+  /**
+   * @param maxMemoryBytes most bytes of pixels and masks kept on the heap
+   * @param directory where pages are written to and read back from, or null
+   *                  to keep pages on the heap only
+   */
+  public OriginalPageCache(long maxMemoryBytes, File directory)
+          throws IOException{
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.directory = directory;
+    if (directory != null)
+      Files.createDirectories(directory.toPath());
+  }
+
+  /**
+   * @return Hex SHA-256 of `pdf', the form of hash get() and put() expect.
+   */
+  public static String hash(byte[] pdf) {
+    MessageDigest digest = sha256();
+    digest.update(pdf);
+    return hex(digest);
+  }
+
+  /**
+   * Same as hash(byte[]) of the contents of `pdf', read a chunk at a time
+   * rather than all at once.
+   */
+  public static String hash(File pdf) throws IOException{
+    MessageDigest digest = sha256();
+    try (InputStream in = new FileInputStream(pdf)) {
+      byte[] chunk = new byte[CHUNK_BYTES];
+      for (int n; (n = in.read(chunk)) > 0; )
+        digest.update(chunk, 0, n);
+    }
+    return hex(digest);
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new AssertionError(e);
+    }
+  }
+
+  private static String hex(MessageDigest digest) {
+    StringBuilder hex = new StringBuilder(64);
+    for (byte b : digest.digest())
+      hex.append(String.format("%02x", b));
+    return hex.toString();
+  }
+
+  /**
+   * @return The cached page, or null if neither tier has it.
+   */
+  public Entry get(String pdfHash, int page, float dpi) throws IOException{
+    Key key = new Key(pdfHash, page, dpi);
+    synchronized (this) {
+      Entry entry = memory.get(key);
+      if (entry != null)
+        return entry;
+    }
+    if (directory == null)
+      return null;
+    Entry entry = readFile(new File(directory, key.fileName()));
+    if (entry != null)
+      putInMemory(key, entry);
+    return entry;
+  }
+
+  public void put(String pdfHash, int page, float dpi, Entry entry)
+          throws IOException{
+    Key key = new Key(pdfHash, page, dpi);
+    putInMemory(key, entry);
+    if (directory != null)
+      writeFile(new File(directory, key.fileName()), entry);
+  }
+
+  /**
+   * Empties the in-memory tier. Files on disk are kept.
+   */
+  public synchronized void clearMemory() {
+    memory.clear();
+    memoryBytes = 0;
+  }
+
+  private synchronized void putInMemory(Key key, Entry entry) {
+    if (entry.bytes() > maxMemoryBytes)
+      return;
+    Entry previous = memory.put(key, entry);
+    if (previous != null)
+      memoryBytes -= previous.bytes();
+    memoryBytes += entry.bytes();
+    Iterator<Entry> eldest = memory.values().iterator();
+    while (memoryBytes > maxMemoryBytes) {
+      memoryBytes -= eldest.next().bytes();
+      eldest.remove();
+    }
+  }
+
+  private static long fileSize(int width, int height) {
+    return HEADER_BYTES + 4L * width * height
+            + PageAnalysis.serializedSize(width, height);
+  }
+
+  /**
+   * @return The page in `file', or null if there is none. A file that can't
+   * be read, or whose size or analysis doesn't match the page its header
+   * describes, is deleted and null returned, as if it had never been
+   * written.
+   */
+  private static Entry readFile(File file) {
+    if (!file.isFile())
+      return null;
+    try (FileChannel channel =
+                 FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+      readFully(channel, header);
+      int magic = header.getInt(), width = header.getInt();
+      int height = header.getInt();
+      if (magic == MAGIC && width > 0 && height > 0
+              && channel.size() == fileSize(width, height)) {
+        BufferedImage image =
+                new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels =
+                ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES);
+        for (int done = 0; done < pixels.length; ) {
+          chunk.clear();
+          chunk.limit(Math.min(CHUNK_BYTES, 4 * (pixels.length - done)));
+          readFully(channel, chunk);
+          int read = chunk.limit() / 4;
+          chunk.asIntBuffer().get(pixels, done, read);
+          done += read;
+        }
+        ByteBuffer analysis = ByteBuffer.allocate(
+                PageAnalysis.serializedSize(width, height));
+        readFully(channel, analysis);
+        return new Entry(image, PageAnalysis.read(analysis, width, height));
+      }
+    } catch (IOException | BufferUnderflowException e) {
+      // Deleted below, like any other file that isn't a whole page.
+    }
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      // put() replaces it the next time the page is rendered.
+    }
+    return null;
+  }
+
+  /**
+   * Fills `buffer' from its position to its limit, then flips it for
+   * reading.
+   */
+  private static void readFully(FileChannel channel, ByteBuffer buffer)
+          throws IOException{
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer) < 0)
+        throw new EOFException("Cache file ends early");
+    }
+    buffer.flip();
+  }
+
+  // Written to a temporary file first, so that a reader never reads a
+  // half-written page.
+  private static void writeFile(File file, Entry entry) throws IOException{
+    BufferedImage image = entry.getImage();
+    int width = image.getWidth(), height = image.getHeight();
+    long size = HEADER_BYTES + 4L * width * height
+            + entry.getAnalysis().serializedSize();
+    File tmp = File.createTempFile(file.getName(), ".tmp",
+            file.getParentFile());
+    try {
+      try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+           FileChannel channel = raf.getChannel()) {
+        MappedByteBuffer out =
+                channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        out.putInt(MAGIC).putInt(width).putInt(height);
+        IntBuffer pixels = out.asIntBuffer();
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++)
+          pixels.put(image.getRGB(0, y, width, 1, row, 0, width));
+        out.position(out.position() + 4 * width * height);
+        entry.getAnalysis().write(out);
+        out.force();
+      }
+      Files.move(tmp.toPath(), file.toPath(),
+              StandardCopyOption.REPLACE_EXISTING,
+              StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(tmp.toPath());
+    }
+  }
+}
@@ -11,28 +11,63 @@ import MixedRealityPDF.AnnotationProcessor.Identification.AnnotationIdentifier;
 import MixedRealityPDF.AnnotationProcessor.Identification.BasicClassifier;
 import MixedRealityPDF.AnnotationProcessor.Identification.EverythingIsText;
 import MixedRealityPDF.AnnotationProcessor.Identification.IAnnotationIdentifier;
+import MixedRealityPDF.Diagnostics.IDebugSink;
+import MixedRealityPDF.Diagnostics.PipelineMetrics;
+import MixedRealityPDF.Diagnostics.Stage;
+import MixedRealityPDF.Diagnostics.StageEvent;
 import MixedRealityPDF.ImageProcessor.Alignment.ImageWrapper;
 import MixedRealityPDF.ImageProcessor.ColourRemoval.ColorExtractor;
 import MixedRealityPDF.ImageProcessor.IAlignment;
 import MixedRealityPDF.ImageProcessor.IDifferenceMap;
+import MixedRealityPDF.ImageProcessor.PageBufferPool;
+import MixedRealityPDF.ImageProcessor.SparseDifference;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.PDFCloneUtility;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class PDFPenAndPaper {
 
-  Collection<Annotation> annotations = new ArrayList<>();
+  // Annotations found on each page, keyed (and so ordered) by page number.
+  private final SortedMap<Integer, Collection<Annotation>> annotations =
+          new ConcurrentSkipListMap<>();
 
-  private static IDifferenceMap imageDiff = new ColorExtractor();
-  private static IClusterDetector clusterDetector = new DBSCANClusterDetector();
+  // Stages and settings of this job. Fixed for the lifetime of the job.
+  private final PenAndPaperPipeline pipeline;
+
+  // Scratch directory the job made for itself, or null if it didn't need one
+  // or was given one by the pipeline.
+  private File ownWorkspace = null;
+
+  // Stages picked up by PenAndPaperPipeline.builder(). Changing them has no
+  // effect on jobs that already have a pipeline.
+  private static volatile IDifferenceMap imageDiff = new ColorExtractor();
+  private static volatile IClusterDetector clusterDetector = new DBSCANClusterDetector();
   //private static IAnnotationIdentifier annId = new AnnotationIdentifier();
   //private static IAnnotationIdentifier annId = null;
 
@@ -42,97 +77,454 @@ public class PDFPenAndPaper {
 
   //private static IAnnotationIdentifier annId = new EverythingIsText();
 
-  private static IAnnotationIdentifier annId = new BasicClassifier();
+  private static volatile IAnnotationIdentifier annId = new BasicClassifier();
 
-  private static IAlignment alignment = new ImageWrapper();
+  private static volatile IAlignment alignment = new ImageWrapper();
 
   public PDFPenAndPaper(File pdfOriginalFile, File pdfScannedFile,
                         String outputFilePath) throws IOException{
+    this(pdfOriginalFile, pdfScannedFile, outputFilePath,
+            PenAndPaperPipeline.builder().build());
+  }
+
+  /**
+   * @param threads number of pages processed at once. With 1 every page is
+   *                processed in turn on the calling thread.
+   */
+  public PDFPenAndPaper(File pdfOriginalFile, File pdfScannedFile,
+                        String outputFilePath, int threads) throws IOException{
+    this(pdfOriginalFile, pdfScannedFile, outputFilePath,
+            PenAndPaperPipeline.builder().threads(threads).build());
+  }
+
+  /**
+   * @param threads number of pages processed at once.
+   * @param streaming if true, each page's annotations are applied to the
+   *                  output as soon as that page has been processed and are
+   *                  then dropped, so memory use depends on the size of a
+   *                  page rather than the length of the document. PDF
+   *                  streams are also kept in temporary files instead of on
+   *                  the heap. getAnnotations() is empty in this mode.
+   */
+  public PDFPenAndPaper(File pdfOriginalFile, File pdfScannedFile,
+                        String outputFilePath, int threads, boolean streaming)
+          throws IOException{
+    this(pdfOriginalFile, pdfScannedFile, outputFilePath,
+            PenAndPaperPipeline.builder().threads(threads)
+                    .streaming(streaming).build());
+  }
+
+  /**
+   * @param debug receives the intermediate images of each page. It is not
+   *              closed here, the caller owns it.
+   */
+  public PDFPenAndPaper(File pdfOriginalFile, File pdfScannedFile,
+                        String outputFilePath, int threads, boolean streaming,
+                        IDebugSink debug) throws IOException{
+    this(pdfOriginalFile, pdfScannedFile, outputFilePath,
+            PenAndPaperPipeline.builder().threads(threads)
+                    .streaming(streaming).debugSink(debug).build());
+  }
+
+  /**
+   * Runs the whole job: finds the annotations on every page of the scan and
+   * saves a copy of the original with them applied to `outputFilePath'.
+   * @param pipeline stages and settings to use for this job
+   */
+  public PDFPenAndPaper(File pdfOriginalFile, File pdfScannedFile,
+                        String outputFilePath, PenAndPaperPipeline pipeline)
+          throws IOException{
+    this.pipeline = pipeline;
+    MemoryUsageSetting memory = memoryUsage();
+    try{
+      // Pages come from the cache, if there is one, as they are needed, so
+      // a cached original costs no more memory than a rendered one.
+      String hash = pipeline.getOriginalCache() == null ? null
+              : OriginalPageCache.hash(pdfOriginalFile);
+      try(PDDocument original = PDDocument.load(pdfOriginalFile, memory)){
+        PDFRenderer originalRenderer = new PDFRenderer(original);
+        run(original, page -> PreparedOriginal.preparePage(originalRenderer,
+                        hash, page, pipeline),
+                pdfScannedFile, outputFilePath, memory);
+      }
+    } finally {
+      deleteOwnWorkspace();
+    }
+  }
+
+  /**
+   * Same as above, but against an original that has already been rendered
+   * and prepared, so only the scan is rendered. See PenAndPaperBatch.
+   * @param pipeline must use the same alignment and difference stages the
+   *                 original was prepared with
+   */
+  public PDFPenAndPaper(PreparedOriginal original, File pdfScannedFile,
+                        String outputFilePath, PenAndPaperPipeline pipeline)
+          throws IOException{
+    this.pipeline = pipeline;
+    MemoryUsageSetting memory = memoryUsage();
+    try(PDDocument originalDocument = original.load(memory)){
+      run(originalDocument, original::getPage, pdfScannedFile, outputFilePath,
+              memory);
+    } finally {
+      deleteOwnWorkspace();
+    }
+  }
+
+  // Where the original's page images come from: rendered on demand, or
+  // taken from a PreparedOriginal.
+  private interface OriginalPages {
+    PreparedOriginal.Page get(int page) throws IOException;
+  }
+
+  /**
+   * Where the job's PDF streams are kept. When streaming without a workspace
+   * from the pipeline, the job makes a directory of its own for them, which
+   * deleteOwnWorkspace() removes again.
+   */
+  private MemoryUsageSetting memoryUsage() throws IOException{
+    if(!pipeline.isStreaming())
+      return MemoryUsageSetting.setupMainMemoryOnly();
+    File workspace = pipeline.getWorkspace();
+    if(workspace == null)
+      workspace = ownWorkspace =
+              Files.createTempDirectory("mixedrealitypdf-").toFile();
+    return MemoryUsageSetting.setupTempFileOnly().setTempDir(workspace);
+  }
+
+  /**
+   * Deletes the directory memoryUsage() made, if it made one, with anything
+   * left in it. Called once the job's documents are closed. Files that can't
+   * be deleted are left behind rather than failing a job that is otherwise
+   * done.
+   */
+  private void deleteOwnWorkspace(){
+    if(ownWorkspace == null)
+      return;
+    try(Stream<Path> files = Files.walk(ownWorkspace.toPath())){
+      // Children before their directory.
+      files.sorted(Comparator.reverseOrder()).map(Path::toFile)
+              .forEach(File::delete);
+    } catch (IOException | UncheckedIOException e){
+      // Left for the OS to clean out of java.io.tmpdir.
+    }
+    ownWorkspace = null;
+  }
+
+  private void run(PDDocument original, OriginalPages originalPages,
+                   File pdfScannedFile, String outputFilePath,
+                   MemoryUsageSetting memory) throws IOException{
     try(
-            PDDocument original = PDDocument.load(pdfOriginalFile);
-            PDDocument scanned  = PDDocument.load(pdfScannedFile);
-            PDDocument copy     = copy(original);
+            PDDocument scanned  = PDDocument.load(pdfScannedFile, memory);
+            PDDocument copy     = copy(original, memory);
     ){
-      init(original, scanned);
+      PDDocument streamTo = null;
+      if(pipeline.isStreaming()){
+        // Don't let decoded scan images outlive the page they belong to.
+        scanned.setResourceCache(null);
+        streamTo = copy;
+      }
+      int pages = original.getNumberOfPages();
+      if(pipeline.getThreads() > 1)
+        initParallel(originalPages, pages, scanned, pipeline.getThreads(),
+                streamTo);
+      else
+        init(originalPages, pages, scanned, streamTo);
       applyAnnotations(copy);
       copy.save(new File(outputFilePath));
     }
   }
 
-  private PDDocument copy(PDDocument doc) throws IOException{
-    PDDocument copy = new PDDocument();
-    for(int i=0; i<doc.getNumberOfPages(); i++)
-      copy.importPage(doc.getPage(i));
+  /**
+   * Copy of `doc' for the annotations to be applied to. Its pages are cloned
+   * along with their resources, inherited ones included, rather than
+   * imported: an imported page shares its resources with the original, and
+   * applying an annotation adds fonts to them while other workers may still
+   * be rendering pages of the original.
+   */
+  private static PDDocument copy(PDDocument doc, MemoryUsageSetting memory)
+          throws IOException{
+    PDDocument copy = new PDDocument(memory);
+    PDFCloneUtility cloner = new PDFCloneUtility(copy);
+    for(int i=0; i<doc.getNumberOfPages(); i++){
+      PDPage page = doc.getPage(i);
+      // Without its parent, or the whole page tree would be cloned with it.
+      COSDictionary dictionary = new COSDictionary(page.getCOSObject());
+      dictionary.removeItem(COSName.PARENT);
+      PDPage cloned = new PDPage(
+              (COSDictionary) cloner.cloneForNewDocument(dictionary));
+      // These may be inherited from the parent.
+      cloned.setMediaBox(page.getMediaBox());
+      cloned.setCropBox(page.getCropBox());
+      cloned.setRotation(page.getRotation());
+      PDResources resources = page.getResources();
+      cloned.setResources(resources == null ? new PDResources()
+              : new PDResources((COSDictionary)
+                      cloner.cloneForNewDocument(resources)));
+      copy.addPage(cloned);
+    }
     return copy;
   }
 
 
   public PDFPenAndPaper(BufferedImage scannedImage, BufferedImage pdfPageImage)
           throws IOException {
-    initSinglePage(pdfPageImage, scannedImage, 0);
+    this(scannedImage, pdfPageImage, PenAndPaperPipeline.builder().build());
   }
 
-  private void initSinglePage(BufferedImage pdf, BufferedImage scan, int page){
-    assert(annotations != null);
-    try{
-      File out = new File("Data/PDF.png");
-      ImageIO.write(pdf, "png", out);
-    } catch (Exception e){
-      e.printStackTrace();
+  public PDFPenAndPaper(BufferedImage scannedImage, BufferedImage pdfPageImage,
+                        PenAndPaperPipeline pipeline) throws IOException {
+    this.pipeline = pipeline;
+    annotations.put(0, initSinglePage(
+            new PreparedOriginal.Page(pdfPageImage, pipeline), scannedImage, 0));
+  }
+
+  private Collection<Annotation> initSinglePage(PreparedOriginal.Page original,
+                                                BufferedImage scan, int page){
+    IDebugSink debug = pipeline.getDebugSink();
+    PipelineMetrics metrics = PipelineMetrics.get();
+    // Expanding the original costs a page-sized image, so only when wanted.
+    if(debug.wants(page))
+      debug.write(page, "PDF", original.getImage());
+    debug.write(page, "scan", scan);
+
+    boolean annotated;
+    try(StageEvent event = StageEvent.begin(Stage.FILTER, page)
+            .strategy(pipeline.getPageFilter()).image(scan)){
+      long start = System.nanoTime();
+      annotated = original.mayBeAnnotated(scan);
+      metrics.recordStage(Stage.FILTER, start);
+      event.count(annotated ? 1 : 0);
     }
-    try{
-      File out = new File("Data/scan.png");
-      ImageIO.write(scan, "png", out);
-    } catch (Exception e){
-      e.printStackTrace();
+    if(!annotated){
+      metrics.addSkippedPage();
+      return Collections.emptyList();
     }
 
-
-    scan = alignment.align(pdf, scan);
+    BufferedImage input = scan;
+    BufferedImage aligned;
+    StageEvent alignEvent = StageEvent.begin(Stage.ALIGN, page)
+            .strategy(pipeline.getAlignment()).image(scan);
     try{
-      File out = new File("Data/alignment.png");
-      ImageIO.write(scan, "png", out);
-    } catch (Exception e){
-      e.printStackTrace();
+      long start = System.nanoTime();
+      aligned = original.align(scan);
+      metrics.recordStage(Stage.ALIGN, start);
+    } finally {
+      alignEvent.end();
     }
-    scan = imageDiff.findDifference(pdf, scan);
-    try{
-      File out = new File("Data/diff.png");
-      ImageIO.write(scan, "png", out);
-    } catch (Exception e){
-      e.printStackTrace();
+    scan = aligned;
+    debug.write(page, "alignment", scan);
+
+    SparseDifference difference;
+    try(StageEvent event = StageEvent.begin(Stage.DIFFERENCE, page)
+            .strategy(pipeline.getDifferenceMap()).image(scan)){
+      long start = System.nanoTime();
+      metrics.addPixels((long) scan.getWidth() * scan.getHeight());
+      // Kept as runs of the pixels that differ, which the cluster detector
+      // looks through directly; only identification needs it as an image.
+      difference = original.findSparseDifference(scan);
+      metrics.recordStage(Stage.DIFFERENCE, start);
+      event.count(difference.getPixelCount());
+    }
+    // Identification needs the difference as an image, so the one written
+    // for debugging is kept for it.
+    BufferedImage differenceImage = null;
+    if(debug.wants(page)){
+      differenceImage = difference.toImage();
+      debug.write(page, "diff", differenceImage);
     }
 
+    // The images the stages leased for this page go back to the pool once
+    // the next stage is done with them. Not the scan, which belongs to the
+    // caller, nor anything the debug sink may still be writing; the pool
+    // ignores images it didn't lease, such as ones a pluggable alignment
+    // made for itself.
+    boolean reuse = !debug.wants(page);
+    Collection<AnnotationBoundingBox> clusterPoints;
+    try(StageEvent event = StageEvent.begin(Stage.CLUSTER, page)
+            .strategy(pipeline.getClusterDetector()).image(scan)){
+      if(reuse && aligned != input)
+        PageBufferPool.shared().release(aligned);
+      long start = System.nanoTime();
+      clusterPoints = pipeline.getClusterDetector().cluster(difference);
+      metrics.recordStage(Stage.CLUSTER, start);
+      metrics.addClusters(clusterPoints.size());
+      event.count(clusterPoints.size());
+    }
 
+    scan = differenceImage != null ? differenceImage : difference.toImage();
+    Collection<Annotation> pageAnnotations;
+    try(StageEvent event = StageEvent.begin(Stage.IDENTIFY, page)
+            .strategy(pipeline.getAnnotationIdentifier()).image(scan)){
+      long start = System.nanoTime();
+      pageAnnotations = pipeline.getAnnotationIdentifier()
+              .identifyAnnotations(scan, clusterPoints, page);
+      metrics.recordStage(Stage.IDENTIFY, start);
+      event.count(pageAnnotations.size());
+    }
+    if(reuse)
+      PageBufferPool.shared().release(scan);
+    for(Annotation ann : pageAnnotations)
+      metrics.addAnnotation(ann.getClass().getSimpleName());
+    metrics.addPage();
+    return pageAnnotations;
+  }
 
-    Collection<AnnotationBoundingBox> clusterPoints;
-    clusterPoints = clusterDetector.cluster(scan);
-    annotations = annId.identifyAnnotations(scan, clusterPoints, page);
+  /**
+   * Renders a page at 72 DPI. PDFRenderer is not thread safe, so only one
+   * thread at a time may render from the same renderer.
+   */
+  static BufferedImage render(PDFRenderer renderer, int page, ImageType type)
+          throws IOException{
+    synchronized(renderer){
+      try(StageEvent event = StageEvent.begin(Stage.RENDER, page)
+              .strategy(renderer)){
+        long start = System.nanoTime();
+        BufferedImage image = renderer.renderImage(page, 1f, type);
+        PipelineMetrics.get().recordStage(Stage.RENDER, start);
+        event.image(image);
+        return image;
+      }
+    }
+  }
+
+  /**
+   * Image of a page of the scan. If `extract' is set, pages that are a
+   * single scanned image are not rendered, the image is decoded and shrunk
+   * to the render size instead (see ScanImageExtractor). Any other page is
+   * rendered like render() does. `renderer' must belong to `scan', and is
+   * locked in the same way.
+   */
+  private static BufferedImage scanImage(PDDocument scan, PDFRenderer renderer,
+                                         int page, boolean extract)
+          throws IOException{
+    if(!extract)
+      return render(renderer, page, ImageType.ARGB);
+    synchronized(renderer){
+      BufferedImage image;
+      // Ended before falling back to render(), which begins one of its own.
+      try(StageEvent event = StageEvent.begin(Stage.RENDER, page)){
+        long start = System.nanoTime();
+        image = ScanImageExtractor.extract(scan.getPage(page));
+        if(image != null){
+          PipelineMetrics.get().recordStage(Stage.RENDER, start);
+          event.image(image);
+        }
+      }
+      return image != null ? image : render(renderer, page, ImageType.ARGB);
+    }
+  }
+
+  /**
+   * Stores the annotations found on a page or, when streaming, applies them
+   * to `streamTo' straight away and lets them go.
+   */
+  private void finishPage(int page, Collection<Annotation> pageAnnotations,
+                          PDDocument streamTo) throws IOException{
+    if(streamTo == null){
+      annotations.put(page, pageAnnotations);
+      return;
+    }
+    synchronized(streamTo){
+      applyAnnotations(streamTo, pageAnnotations, page);
+    }
   }
 
-  private void init(PDDocument original, PDDocument scan) throws  IOException{
-    assert(original.getNumberOfPages() == scan.getNumberOfPages());
-    PDFRenderer originalRenderer = new PDFRenderer(original);
+  private void init(OriginalPages original, int pages, PDDocument scan,
+                    PDDocument streamTo) throws  IOException{
+    assert(pages == scan.getNumberOfPages());
     PDFRenderer scanRenderer = new PDFRenderer(scan);
 
-    for(int i=0; i<original.getNumberOfPages(); i++){
-      BufferedImage pdfPage;
-      pdfPage = originalRenderer.renderImage(i, 1f, ImageType.RGB);
+    for(int i=0; i<pages; i++){
+      PreparedOriginal.Page pdfPage = original.get(i);
       BufferedImage scanImg;
-      scanImg = scanRenderer.renderImage(i, 1f, ImageType.ARGB);
-      initSinglePage(pdfPage, scanImg, i);
+      scanImg = scanImage(scan, scanRenderer, i,
+              pipeline.isExtractingScanImages());
+      finishPage(i, initSinglePage(pdfPage, scanImg, i), streamTo);
+    }
+  }
+
+  /**
+   * Same as init, but runs initSinglePage for up to `threads' pages at once.
+   * A page is only rendered once a worker is free to process it, so at most
+   * `threads' pages are held in memory. The workers run in a ForkJoinPool of
+   * `threads' threads, which the image kernels of every page split their rows
+   * across too (see RowBands), so pages and kernels never use more than
+   * `threads' threads between them.
+   */
+  private void initParallel(OriginalPages original, int pages, PDDocument scan,
+                            int threads, PDDocument streamTo)
+          throws IOException{
+    assert(pages == scan.getNumberOfPages());
+    PDFRenderer scanRenderer = new PDFRenderer(scan);
+
+    ForkJoinPool workers = new ForkJoinPool(threads);
+    AtomicInteger nextPage = new AtomicInteger();
+    try{
+      // One task per thread, each taking pages until there are none left.
+      // Threads the pool adds while a task waits for its kernels can then
+      // only help with those kernels, never start another page.
+      List<Future<?>> results = new ArrayList<>();
+      for(int i=0; i<Math.min(threads, pages); i++){
+        results.add(workers.submit(() -> {
+          int page;
+          while((page = nextPage.getAndIncrement()) < pages){
+            PreparedOriginal.Page pdfPage = original.get(page);
+            BufferedImage scanImg;
+            scanImg = scanImage(scan, scanRenderer, page,
+                    pipeline.isExtractingScanImages());
+            finishPage(page, initSinglePage(pdfPage, scanImg, page), streamTo);
+          }
+          return null;
+        }));
+      }
+      for(Future<?> page : results)
+        page.get();
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while processing pages");
+    } catch (ExecutionException e){
+      Throwable cause = e.getCause();
+      if(cause instanceof IOException)
+        throw (IOException) cause;
+      if(cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if(cause instanceof Error)
+        throw (Error) cause;
+      throw new IOException(cause);
+    } finally {
+      workers.shutdownNow();
     }
   }
 
   public void applyAnnotations(PDDocument doc) throws IOException {
-    for(Annotation ann : annotations){
-      if(ann.getPageNumber() < doc.getNumberOfPages())
-        ann.applyAnnotation(doc);
+    applyAnnotations(doc, getAnnotations(), -1);
+  }
+
+  /**
+   * @param page page the annotations are on, or -1 if they span pages
+   */
+  private static void applyAnnotations(PDDocument doc,
+          Collection<Annotation> annotations, int page) throws IOException {
+    try(StageEvent event = StageEvent.begin(Stage.APPLY, page)){
+      long start = System.nanoTime();
+      int applied = 0;
+      for(Annotation ann : annotations){
+        if(ann.getPageNumber() < doc.getNumberOfPages()){
+          ann.applyAnnotation(doc);
+          applied++;
+        }
+      }
+      PipelineMetrics.get().recordStage(Stage.APPLY, start);
+      event.count(applied);
     }
   }
 
   public List<Annotation> getAnnotations() {
-    return new ArrayList<>(annotations);
+    List<Annotation> all = new ArrayList<>();
+    for(Collection<Annotation> page : annotations.values())
+      all.addAll(page);
+    return all;
   }
 
   public List<Highlight> getHighlights() {
@@ -148,6 +540,7 @@ public class PDFPenAndPaper {
   }
 
   public <T extends Annotation> List<T> getAnnotations(Class<T> type) {
+    List<Annotation> annotations = getAnnotations();
     int count = 0;
     for (Annotation ann : annotations) {
       if (ann.getClass().equals(type))
@@ -163,10 +556,23 @@ public class PDFPenAndPaper {
     return filteredAnn;
   }
 
+  public PenAndPaperPipeline getPipeline() {
+    return pipeline;
+  }
+
+  public static IAlignment getDefaultAlignment() {
+    return alignment;
+  }
+
   public static IDifferenceMap getDefaultDifferenceMap() {
     return imageDiff;
   }
 
+  /**
+   * @deprecated Only affects pipelines built afterwards. Set the stage on
+   * PenAndPaperPipeline.Builder instead.
+   */
+  @Deprecated
   public static void
   setDefaultDifferenceMap(IDifferenceMap defaultDifferenceMap) {
     PDFPenAndPaper.imageDiff = defaultDifferenceMap;
@@ -176,6 +582,11 @@ public class PDFPenAndPaper {
     return clusterDetector;
   }
 
+  /**
+   * @deprecated Only affects pipelines built afterwards. Set the stage on
+   * PenAndPaperPipeline.Builder instead.
+   */
+  @Deprecated
   public static void
   setDefaultClusterDetector(IClusterDetector defaultClusterDetector) {
     PDFPenAndPaper.clusterDetector = defaultClusterDetector;
@@ -185,6 +596,11 @@ public class PDFPenAndPaper {
     return annId;
   }
 
+  /**
+   * @deprecated Only affects pipelines built afterwards. Set the stage on
+   * PenAndPaperPipeline.Builder instead.
+   */
+  @Deprecated
   public static void setDefaultAnnotationIdentifier(
           IAnnotationIdentifier defaultAnnotationIdentifier) {
     PDFPenAndPaper.annId = defaultAnnotationIdentifier;
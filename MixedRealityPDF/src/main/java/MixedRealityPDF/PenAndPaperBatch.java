@@ -0,0 +1,91 @@
+package MixedRealityPDF;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Processes many annotated scans of the same original PDF, e.g. one handout
+ * printed for a whole class and scanned back. The original is rendered and
+ * prepared once, then shared by every scan.
+ */
+public final class PenAndPaperBatch {
+
+  private final PreparedOriginal original;
+  private final PenAndPaperPipeline pipeline;
+
+  /**
+   * @param pipeline stages used for every scan. Its thread count is the
+   *                 number of scans processed at once, each scan's pages
+   *                 being processed in turn. The image kernels of every
+   *                 page share the same threads.
+   */
+  public PenAndPaperBatch(File pdfOriginalFile, PenAndPaperPipeline pipeline)
+          throws IOException{
+    this.pipeline = pipeline;
+    original = PreparedOriginal.prepare(pdfOriginalFile, pipeline);
+  }
+
+  public PreparedOriginal getOriginal() {
+    return original;
+  }
+
+  /**
+   * Saves a copy of the original with the annotations of
+   * `pdfScannedFiles[i]' applied to `outputFilePaths[i]', for every i.
+   * @return The finished job for each scan, in the same order.
+   */
+  public List<PDFPenAndPaper> process(List<File> pdfScannedFiles,
+                                      List<String> outputFilePaths)
+          throws IOException{
+    if(pdfScannedFiles.size() != outputFilePaths.size())
+      throw new IllegalArgumentException(
+              "Need exactly one output path per scan");
+    PenAndPaperPipeline perScan = pipeline.toBuilder().threads(1).build();
+
+    int scans = pdfScannedFiles.size();
+    int threads = Math.min(pipeline.getThreads(), Math.max(1, scans));
+    ForkJoinPool workers = new ForkJoinPool(threads);
+    AtomicInteger nextScan = new AtomicInteger();
+    PDFPenAndPaper[] done = new PDFPenAndPaper[scans];
+    try{
+      // As in PDFPenAndPaper, one task per thread takes scans in turn, so no
+      // more than `threads' scans are open at once.
+      List<Future<?>> jobs = new ArrayList<>();
+      for(int t=0; t<threads; t++){
+        jobs.add(workers.submit(() -> {
+          int i;
+          while((i = nextScan.getAndIncrement()) < scans){
+            done[i] = new PDFPenAndPaper(original, pdfScannedFiles.get(i),
+                    outputFilePaths.get(i), perScan);
+          }
+          return null;
+        }));
+      }
+      for(Future<?> job : jobs)
+        job.get();
+      return new ArrayList<>(Arrays.asList(done));
+    } catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while processing scans");
+    } catch (ExecutionException e){
+      Throwable cause = e.getCause();
+      if(cause instanceof IOException)
+        throw (IOException) cause;
+      if(cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      if(cause instanceof Error)
+        throw (Error) cause;
+      throw new IOException(cause);
+    } finally {
+      workers.shutdownNow();
+    }
+  }
+}
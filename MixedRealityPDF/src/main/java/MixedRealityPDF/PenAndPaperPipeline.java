@@ -0,0 +1,285 @@
+package MixedRealityPDF;
+
+import MixedRealityPDF.AnnotationProcessor.IClusterDetector;
+import MixedRealityPDF.AnnotationProcessor.Identification.IAnnotationIdentifier;
+import MixedRealityPDF.Diagnostics.IDebugSink;
+import MixedRealityPDF.ImageProcessor.IAlignment;
+import MixedRealityPDF.ImageProcessor.IDifferenceMap;
+import MixedRealityPDF.ImageProcessor.IPageFilter;
+import org.apache.pdfbox.rendering.ImageType;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Everything a PDFPenAndPaper job is configured with: the stage
+ * implementations, how pages are scheduled and where the job may keep
+ * scratch files. Instances are immutable, so any number of jobs with
+ * different pipelines can run side by side in one JVM.
+ */
+public final class PenAndPaperPipeline {
+
+  private final IPageFilter pageFilter;
+  private final IAlignment alignment;
+  private final IDifferenceMap differenceMap;
+  private final IClusterDetector clusterDetector;
+  private final IAnnotationIdentifier annotationIdentifier;
+  private final int threads;
+  private final boolean streaming;
+  private final boolean extractScanImages;
+  private final IDebugSink debug;
+  private final File workspace;
+  private final OriginalPageCache originalCache;
+  private final ImageType originalImageType;
+
+  private PenAndPaperPipeline(Builder builder) {
+    pageFilter = builder.pageFilter;
+    alignment = builder.alignment;
+    differenceMap = builder.differenceMap;
+    clusterDetector = builder.clusterDetector;
+    annotationIdentifier = builder.annotationIdentifier;
+    threads = builder.threads;
+    streaming = builder.streaming;
+    extractScanImages = builder.extractScanImages;
+    debug = builder.debug;
+    workspace = builder.workspace;
+    originalCache = builder.originalCache;
+    originalImageType = builder.originalImageType;
+  }
+
+  /**
+   * @return A builder starting from the stages currently set as defaults on
+   * PDFPenAndPaper, running one page at a time without streaming.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * @return A builder starting from this pipeline's stages and settings,
+   * including its workspace.
+   */
+  public Builder toBuilder() {
+    Builder builder = new Builder();
+    builder.pageFilter = pageFilter;
+    builder.alignment = alignment;
+    builder.differenceMap = differenceMap;
+    builder.clusterDetector = clusterDetector;
+    builder.annotationIdentifier = annotationIdentifier;
+    builder.threads = threads;
+    builder.streaming = streaming;
+    builder.extractScanImages = extractScanImages;
+    builder.debug = debug;
+    builder.workspace = workspace;
+    builder.originalCache = originalCache;
+    builder.originalImageType = originalImageType;
+    return builder;
+  }
+
+  public IPageFilter getPageFilter() {
+    return pageFilter;
+  }
+
+  public IAlignment getAlignment() {
+    return alignment;
+  }
+
+  public IDifferenceMap getDifferenceMap() {
+    return differenceMap;
+  }
+
+  public IClusterDetector getClusterDetector() {
+    return clusterDetector;
+  }
+
+  public IAnnotationIdentifier getAnnotationIdentifier() {
+    return annotationIdentifier;
+  }
+
+  public int getThreads() {
+    return threads;
+  }
+
+  public boolean isStreaming() {
+    return streaming;
+  }
+
+  public boolean isExtractingScanImages() {
+    return extractScanImages;
+  }
+
+  public IDebugSink getDebugSink() {
+    return debug;
+  }
+
+  /**
+   * @return The directory the caller gave for scratch files, created if it
+   * does not exist yet, or null if each job is to make (and, once done,
+   * delete) a directory of its own under java.io.tmpdir.
+   */
+  public File getWorkspace() throws IOException {
+    return workspace == null ? null
+            : Files.createDirectories(workspace.toPath()).toFile();
+  }
+
+  /**
+   * @return Where rendered and analysed pages of originals are kept between
+   * jobs, or null if they are not kept.
+   */
+  public OriginalPageCache getOriginalCache() {
+    return originalCache;
+  }
+
+  /**
+   * @return What the original's pages are rendered as.
+   */
+  public ImageType getOriginalImageType() {
+    return originalImageType;
+  }
+
+  public static final class Builder {
+    private IPageFilter pageFilter = IPageFilter.NONE;
+    private IAlignment alignment =
+            PDFPenAndPaper.getDefaultAlignment();
+    private IDifferenceMap differenceMap =
+            PDFPenAndPaper.getDefaultDifferenceMap();
+    private IClusterDetector clusterDetector =
+            PDFPenAndPaper.getDefaultClusterDetector();
+    private IAnnotationIdentifier annotationIdentifier =
+            PDFPenAndPaper.getDefaultAnnotationIdentifier();
+    private int threads = 1;
+    private boolean streaming = false;
+    private boolean extractScanImages = false;
+    private IDebugSink debug = IDebugSink.NONE;
+    private File workspace = null;
+    private OriginalPageCache originalCache = null;
+    private ImageType originalImageType = ImageType.RGB;
+
+    private Builder() {}
+
+    /**
+     * @param pageFilter test run before alignment; pages it judges clean
+     *                   skip every later stage. Defaults to IPageFilter.NONE,
+     *                   which processes every page.
+     */
+    public Builder pageFilter(IPageFilter pageFilter) {
+      this.pageFilter = pageFilter;
+      return this;
+    }
+
+    public Builder alignment(IAlignment alignment) {
+      this.alignment = alignment;
+      return this;
+    }
+
+    public Builder differenceMap(IDifferenceMap differenceMap) {
+      this.differenceMap = differenceMap;
+      return this;
+    }
+
+    public Builder clusterDetector(IClusterDetector clusterDetector) {
+      this.clusterDetector = clusterDetector;
+      return this;
+    }
+
+    public Builder annotationIdentifier(
+            IAnnotationIdentifier annotationIdentifier) {
+      this.annotationIdentifier = annotationIdentifier;
+      return this;
+    }
+
+    /**
+     * @param threads number of pages processed at once. With 1 every page is
+     *                processed in turn on the calling thread.
+     */
+    public Builder threads(int threads) {
+      this.threads = threads;
+      return this;
+    }
+
+    /**
+     * @param streaming apply each page's annotations to the output as soon
+     *                  as the page is done instead of keeping them all until
+     *                  the end. See PDFPenAndPaper.
+     */
+    public Builder streaming(boolean streaming) {
+      this.streaming = streaming;
+      return this;
+    }
+
+    /**
+     * @param extractScanImages take the scan straight out of scanned pages
+     *                          that are a single image, shrinking it to the
+     *                          render size by area averaging, rather than
+     *                          rendering them. The scan is not kept at its
+     *                          own resolution: every later stage works at
+     *                          the render size. Defaults to false. Other
+     *                          pages are always rendered.
+     */
+    public Builder extractScanImages(boolean extractScanImages) {
+      this.extractScanImages = extractScanImages;
+      return this;
+    }
+
+    public Builder debugSink(IDebugSink debug) {
+      this.debug = debug;
+      return this;
+    }
+
+    /**
+     * @param workspace directory for the job's scratch files, which is left
+     *                  in place once the job is done. Defaults to a new
+     *                  directory under java.io.tmpdir for each job, which the
+     *                  job deletes.
+     */
+    public Builder workspace(File workspace) {
+      this.workspace = workspace;
+      return this;
+    }
+
+    /**
+     * @param originalCache cache to take the original's rendered and
+     *                      analysed pages from, and to add them to when
+     *                      missing. Null, the default, renders them anew.
+     */
+    public Builder originalCache(OriginalPageCache originalCache) {
+      this.originalCache = originalCache;
+      return this;
+    }
+
+    /**
+     * @param originalImageType what to render the original's pages as:
+     *                          RGB, the default, GRAY or BINARY. Prepared
+     *                          pages keep colour only where the rendering
+     *                          has it, so GRAY and BINARY make them about a
+     *                          byte a pixel, but the difference map then
+     *                          compares a colour scan against a grey page
+     *                          and sees every coloured mark in the original
+     *                          as added. Ignored when the original's pages
+     *                          come from an OriginalPageCache.
+     */
+    public Builder originalImageType(ImageType originalImageType) {
+      this.originalImageType = originalImageType;
+      return this;
+    }
+
+    public PenAndPaperPipeline build() {
+      if (pageFilter == null)
+        throw new IllegalStateException("Use IPageFilter.NONE for no filter");
+      if (alignment == null || differenceMap == null
+              || clusterDetector == null || annotationIdentifier == null)
+        throw new IllegalStateException("Every pipeline stage must be set");
+      if (threads < 1)
+        throw new IllegalStateException("threads must be at least 1");
+      if (debug == null)
+        throw new IllegalStateException("Use IDebugSink.NONE for no debugging");
+      if (originalImageType != ImageType.RGB
+              && originalImageType != ImageType.GRAY
+              && originalImageType != ImageType.BINARY)
+        throw new IllegalStateException(
+                "Originals must be rendered as RGB, GRAY or BINARY");
+      return new PenAndPaperPipeline(this);
+    }
+  }
+}
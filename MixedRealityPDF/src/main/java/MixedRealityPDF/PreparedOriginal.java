@@ -0,0 +1,175 @@
+package MixedRealityPDF;
+
+import MixedRealityPDF.ImageProcessor.Alignment.PageAnalysis;
+import MixedRealityPDF.ImageProcessor.CompactPage;
+import MixedRealityPDF.ImageProcessor.SparseDifference;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * An original PDF that has been loaded, rendered and prepared for alignment
+ * and differencing once, so that any number of scans of it can be processed
+ * without repeating that work. Instances are immutable and can be shared
+ * between threads.
+ */
+public final class PreparedOriginal {
+
+  /**
+   * One rendered page of the original, with the alignment and difference
+   * stages already fixed to it. The rendering itself is only kept as a
+   * CompactPage, about a quarter of its size, so that the stages that need
+   * no more than a summary of it don't hold the whole image.
+   */
+  public static final class Page {
+    private final CompactPage page;
+    private final Predicate<BufferedImage> filter;
+    private final UnaryOperator<BufferedImage> alignment;
+    private final UnaryOperator<BufferedImage> differenceMap;
+    private final Function<BufferedImage, SparseDifference> sparseDifferenceMap;
+
+    Page(BufferedImage image, PenAndPaperPipeline pipeline) {
+      filter = pipeline.getPageFilter().prepare(image);
+      alignment = pipeline.getAlignment().prepare(image);
+      page = CompactPage.of(image);
+      differenceMap = pipeline.getDifferenceMap().prepare(page);
+      sparseDifferenceMap = pipeline.getDifferenceMap().prepareSparse(page);
+    }
+
+    Page(OriginalPageCache.Entry cached, PenAndPaperPipeline pipeline) {
+      BufferedImage image = cached.getImage();
+      filter = pipeline.getPageFilter().prepare(image);
+      alignment = pipeline.getAlignment().prepare(image, cached.getAnalysis());
+      page = CompactPage.of(image);
+      differenceMap = pipeline.getDifferenceMap().prepare(page);
+      sparseDifferenceMap = pipeline.getDifferenceMap().prepareSparse(page);
+    }
+
+    /**
+     * @return A new TYPE_INT_RGB image of the page, pixel for pixel the
+     * rendering it was prepared from.
+     */
+    public BufferedImage getImage() {
+      return page.toImage();
+    }
+
+    public CompactPage getCompactPage() {
+      return page;
+    }
+
+    /**
+     * @return false iff the page filter judges the scan of this page clean.
+     */
+    public boolean mayBeAnnotated(BufferedImage scan) {
+      return filter.test(scan);
+    }
+
+    /**
+     * @return The scan aligned with this page.
+     */
+    public BufferedImage align(BufferedImage scan) {
+      return alignment.apply(scan);
+    }
+
+    /**
+     * @return The difference between this page and an aligned scan of it.
+     */
+    public BufferedImage findDifference(BufferedImage alignedScan) {
+      return differenceMap.apply(alignedScan);
+    }
+
+    /**
+     * @return Same as findDifference(alignedScan), kept as runs of the
+     * pixels that differ.
+     */
+    public SparseDifference findSparseDifference(BufferedImage alignedScan) {
+      return sparseDifferenceMap.apply(alignedScan);
+    }
+  }
+
+  // Resolution the original's pages are rendered at.
+  static final float DPI = 72f;
+
+  private final byte[] pdf;
+  private final List<Page> pages;
+
+  private PreparedOriginal(byte[] pdf, List<Page> pages) {
+    this.pdf = pdf;
+    this.pages = pages;
+  }
+
+  /**
+   * Renders every page of `pdfOriginalFile' and prepares it with the
+   * pipeline's page filter, alignment and difference stages. The prepared
+   * pages are only valid for pipelines using those same stages. If the pipeline has an
+   * OriginalPageCache, pages found there are neither rendered nor analysed
+   * again, and pages that are missing are added to it; the cache keeps RGB
+   * renderings, so the pipeline's original image type is then ignored.
+   */
+  public static PreparedOriginal prepare(File pdfOriginalFile,
+                                         PenAndPaperPipeline pipeline)
+          throws IOException{
+    byte[] pdf = Files.readAllBytes(pdfOriginalFile.toPath());
+    List<Page> pages = new ArrayList<>();
+    try(PDDocument original = PDDocument.load(pdf)){
+      PDFRenderer renderer = new PDFRenderer(original);
+      String hash = pipeline.getOriginalCache() == null ? null
+              : OriginalPageCache.hash(pdf);
+      for(int i=0; i<original.getNumberOfPages(); i++)
+        pages.add(preparePage(renderer, hash, i, pipeline));
+    }
+    return new PreparedOriginal(pdf, Collections.unmodifiableList(pages));
+  }
+
+  /**
+   * Renders one page of an original and prepares it as prepare() does,
+   * taking it from the pipeline's OriginalPageCache (or adding it there) if
+   * it has one. Lets a job prepare its original a page at a time.
+   * @param renderer renderer of the original, locked as
+   *                 PDFPenAndPaper.render() locks it
+   * @param pdfHash OriginalPageCache.hash() of the original, or null if the
+   *                pipeline has no cache
+   */
+  static Page preparePage(PDFRenderer renderer, String pdfHash, int page,
+                          PenAndPaperPipeline pipeline) throws IOException{
+    OriginalPageCache cache = pipeline.getOriginalCache();
+    if(cache == null)
+      return new Page(PDFPenAndPaper.render(renderer, page,
+              pipeline.getOriginalImageType()), pipeline);
+    OriginalPageCache.Entry cached = cache.get(pdfHash, page, DPI);
+    if(cached == null){
+      BufferedImage image = PDFPenAndPaper.render(renderer, page, ImageType.RGB);
+      cached = new OriginalPageCache.Entry(image, PageAnalysis.of(image));
+      cache.put(pdfHash, page, DPI, cached);
+    }
+    return new Page(cached, pipeline);
+  }
+
+  public int getNumberOfPages() {
+    return pages.size();
+  }
+
+  public Page getPage(int page) {
+    return pages.get(page);
+  }
+
+  /**
+   * @return A new document parsed from the original's bytes. The caller
+   * owns it and must close it.
+   */
+  public PDDocument load(MemoryUsageSetting memory) throws IOException{
+    return PDDocument.load(pdf, null, null, null, memory);
+  }
+}
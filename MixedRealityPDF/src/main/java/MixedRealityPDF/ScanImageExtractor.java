@@ -0,0 +1,214 @@
+package MixedRealityPDF;
+
+import MixedRealityPDF.ImageProcessor.Downscaler;
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Takes the scan out of a page of a scanned PDF without rasterizing the
+ * page. Scanners write each page as a single image covering the whole page,
+ * so that image, decoded at its own resolution and turned the way the page
+ * is displayed, is exactly what the scanner saw. It is then shrunk to the
+ * size PDFRenderer would render the page at, averaging over the area of
+ * each pixel so that thin pen strokes are kept, and so that the pages held
+ * between stages are no bigger than rendered ones. The scan is turned and
+ * shrunk a strip at a time, so a scan of a large page at a high resolution
+ * costs the heap little more than the decoded image.
+ */
+final class ScanImageExtractor extends PDFGraphicsStreamEngine {
+
+  // How far, in points, the image may fall short of the page's edges.
+  private static final double TOLERANCE = 1.0;
+
+  private PDImage image;
+  private AffineTransform imageToUser;
+  private boolean otherContent = false;
+
+  private ScanImageExtractor(PDPage page) {
+    super(page);
+  }
+
+  /**
+   * @return The page's scan as a TYPE_INT_ARGB image the size of a 72 DPI
+   * render (or at the scan's own resolution, if that is lower), oriented like
+   * PDFRenderer's output, or null if the page is not made of exactly one
+   * image covering it.
+   */
+  static BufferedImage extract(PDPage page) throws IOException{
+    ScanImageExtractor extractor = new ScanImageExtractor(page);
+    extractor.processPage(page);
+    if(extractor.otherContent || extractor.image == null)
+      return null;
+    return extractor.toPageImage(page);
+  }
+
+  private BufferedImage toPageImage(PDPage page) throws IOException{
+    PDRectangle cropBox = page.getCropBox();
+    int rotation = ((page.getRotation() % 360) + 360) % 360;
+    if(rotation % 90 != 0)
+      return null;
+    boolean sideways = rotation == 90 || rotation == 270;
+    double pageWidth = sideways ? cropBox.getHeight() : cropBox.getWidth();
+    double pageHeight = sideways ? cropBox.getWidth() : cropBox.getHeight();
+
+    // User space to the pixels of a 72 DPI render, as PDFRenderer does it.
+    AffineTransform toDevice = new AffineTransform();
+    switch(rotation){
+      case 90:  toDevice.translate(cropBox.getHeight(), 0); break;
+      case 180: toDevice.translate(cropBox.getWidth(), cropBox.getHeight()); break;
+      case 270: toDevice.translate(0, cropBox.getWidth()); break;
+    }
+    toDevice.rotate(Math.toRadians(rotation));
+    toDevice.translate(0, cropBox.getHeight());
+    toDevice.scale(1, -1);
+    toDevice.translate(-cropBox.getLowerLeftX(), -cropBox.getLowerLeftY());
+
+    // Image pixels to device pixels. Images are drawn into the unit square,
+    // with their first row at the top.
+    int width = image.getWidth(), height = image.getHeight();
+    AffineTransform pixelsToDevice = new AffineTransform(toDevice);
+    pixelsToDevice.concatenate(imageToUser);
+    pixelsToDevice.translate(0, 1);
+    pixelsToDevice.scale(1.0 / width, -1.0 / height);
+
+    // Only axis-aligned images map pixels onto pixels.
+    double m00 = pixelsToDevice.getScaleX(), m01 = pixelsToDevice.getShearX();
+    double m10 = pixelsToDevice.getShearY(), m11 = pixelsToDevice.getScaleY();
+    double deviceXPerPixel, deviceYPerPixel;
+    if(isZero(m01) && isZero(m10)){
+      deviceXPerPixel = Math.abs(m00);
+      deviceYPerPixel = Math.abs(m11);
+    } else if(isZero(m00) && isZero(m11)){
+      deviceXPerPixel = Math.abs(m01);
+      deviceYPerPixel = Math.abs(m10);
+    } else {
+      return null;
+    }
+
+    Rectangle2D covered = pixelsToDevice
+            .createTransformedShape(new Rectangle2D.Double(0, 0, width, height))
+            .getBounds2D();
+    if(covered.getMinX() > TOLERANCE || covered.getMinY() > TOLERANCE
+            || covered.getMaxX() < pageWidth - TOLERANCE
+            || covered.getMaxY() < pageHeight - TOLERANCE)
+      return null;
+
+    // Scale the page up to the scan's resolution.
+    double kx = 1 / deviceXPerPixel, ky = 1 / deviceYPerPixel;
+    int outWidth = (int) Math.round(pageWidth * kx);
+    int outHeight = (int) Math.round(pageHeight * ky);
+    AffineTransform pixelsToOut = AffineTransform.getScaleInstance(kx, ky);
+    pixelsToOut.concatenate(pixelsToDevice);
+
+    BufferedImage decoded = image.getImage();
+    Downscaler.Drawing turned = graphics -> {
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+              RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+      graphics.drawImage(decoded, pixelsToOut, null);
+    };
+
+    // The size PDFRenderer renders the page at.
+    int renderWidth = (int) Math.max(Math.floor(pageWidth), 1);
+    int renderHeight = (int) Math.max(Math.floor(pageHeight), 1);
+    if(outWidth < renderWidth || outHeight < renderHeight){
+      // Transparent, as a new image is, wherever the scan falls short.
+      BufferedImage out = new BufferedImage(outWidth, outHeight,
+              BufferedImage.TYPE_INT_ARGB);
+      Graphics2D graphics = out.createGraphics();
+      try{
+        turned.draw(graphics);
+      } finally {
+        graphics.dispose();
+      }
+      return out;
+    }
+    // Turned and shrunk a strip at a time, so the turned scan is never held
+    // whole at its own resolution.
+    return Downscaler.areaAverage(turned, outWidth, outHeight, renderWidth,
+            renderHeight);
+  }
+
+  private static boolean isZero(double value) {
+    return Math.abs(value) < 1e-9;
+  }
+
+  @Override
+  public void drawImage(PDImage pdImage) throws IOException{
+    boolean masked = pdImage.isStencil() || (pdImage instanceof PDImageXObject
+            && ((PDImageXObject) pdImage).getSoftMask() != null);
+    if(image != null || masked){
+      otherContent = true;
+      return;
+    }
+    image = pdImage;
+    imageToUser = getGraphicsState().getCurrentTransformationMatrix()
+            .createAffineTransform();
+  }
+
+  @Override
+  protected void showText(byte[] string) throws IOException{
+    otherContent = true;
+  }
+
+  // Paths only matter once something is painted with them; clipping to a
+  // path (commonly the page's own rectangle) is fine.
+
+  @Override
+  public void strokePath() {
+    otherContent = true;
+  }
+
+  @Override
+  public void fillPath(int windingRule) {
+    otherContent = true;
+  }
+
+  @Override
+  public void fillAndStrokePath(int windingRule) {
+    otherContent = true;
+  }
+
+  @Override
+  public void shadingFill(COSName shadingName) {
+    otherContent = true;
+  }
+
+  @Override
+  public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) {}
+
+  @Override
+  public void clip(int windingRule) {}
+
+  @Override
+  public void moveTo(float x, float y) {}
+
+  @Override
+  public void lineTo(float x, float y) {}
+
+  @Override
+  public void curveTo(float x1, float y1, float x2, float y2, float x3,
+                      float y3) {}
+
+  @Override
+  public Point2D getCurrentPoint() {
+    return new Point2D.Float();
+  }
+
+  @Override
+  public void closePath() {}
+
+  @Override
+  public void endPath() {}
+}
@@ -0,0 +1,38 @@
+package MixedRealityPDF.Diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("MixedRealityPDF.Stage")
+@Label("Pipeline Stage")
+@Category("MixedRealityPDF")
+@Description("One stage of PDFPenAndPaper run on one page")
+class JfrStageEvent extends Event {
+
+  @Label("Stage")
+  String stage;
+
+  @Label("Page")
+  int page;
+
+  @Label("Strategy")
+  @Description("Class implementing the stage")
+  String strategy;
+
+  @Label("Width")
+  int width;
+
+  @Label("Height")
+  int height;
+
+  @Label("Points")
+  @Description("Points clustered during the stage")
+  long points;
+
+  @Label("Count")
+  @Description("Clusters, annotations or differing pixels produced by the stage")
+  long count;
+}
@@ -0,0 +1,109 @@
+package MixedRealityPDF.Diagnostics;
+
+import jdk.jfr.EventType;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Marks one run of a pipeline stage for Java Flight Recorder, so stage
+ * timings can be lined up with GC pauses and allocation in a recording.
+ *
+ * Java 11 version, emitting a JfrStageEvent. When the event is not enabled
+ * in any running recording, begin() returns a shared event that records
+ * nothing, so stages cost no allocation and no thread-local writes.
+ */
+public final class StageEvent implements AutoCloseable {
+
+  private static final EventType TYPE =
+          EventType.getEventType(JfrStageEvent.class);
+
+  // Returned by begin() while the event is disabled.
+  private static final StageEvent DISABLED = new StageEvent();
+
+  // Innermost open event on each thread, for addPoints.
+  private static final ThreadLocal<StageEvent> CURRENT = new ThreadLocal<>();
+
+  // Null for DISABLED.
+  private final JfrStageEvent event;
+  private final StageEvent enclosing;
+  private boolean ended = false;
+
+  private StageEvent() {
+    event = null;
+    enclosing = null;
+  }
+
+  private StageEvent(Stage stage, int page) {
+    event = new JfrStageEvent();
+    enclosing = CURRENT.get();
+    event.stage = stage.name();
+    event.page = page;
+    event.begin();
+  }
+
+  /**
+   * Starts timing a stage. End it with end() or close(), e.g. by opening it
+   * in a try-with-resources statement.
+   * @param page index of the page, or -1 if the stage is not about one page
+   */
+  public static StageEvent begin(Stage stage, int page) {
+    if (!TYPE.isEnabled())
+      return DISABLED;
+    StageEvent stageEvent = new StageEvent(stage, page);
+    CURRENT.set(stageEvent);
+    return stageEvent;
+  }
+
+  /** Records the class implementing the stage. */
+  public StageEvent strategy(Object implementation) {
+    if (event != null && event.isEnabled())
+      event.strategy = implementation.getClass().getName();
+    return this;
+  }
+
+  /** Records the dimensions of the image the stage works on. */
+  public StageEvent image(BufferedImage image) {
+    if (event != null) {
+      event.width = image.getWidth();
+      event.height = image.getHeight();
+    }
+    return this;
+  }
+
+  /** Records how many things (clusters, differing pixels...) the stage produced. */
+  public StageEvent count(long count) {
+    if (event != null)
+      event.count = count;
+    return this;
+  }
+
+  /**
+   * Adds to the point count of the innermost stage open on this thread. Lets
+   * a stage implementation report its work without access to the event.
+   */
+  public static void addPoints(long points) {
+    StageEvent current = CURRENT.get();
+    if (current != null)
+      current.event.points += points;
+  }
+
+  /** Ends the stage. Does nothing if it has already ended. */
+  public void end() {
+    if (event == null || ended)
+      return;
+    ended = true;
+    if (enclosing == null)
+      CURRENT.remove();
+    else
+      CURRENT.set(enclosing);
+    event.end();
+    if (event.shouldCommit())
+      event.commit();
+  }
+
+  /** Same as end(). */
+  @Override
+  public void close() {
+    end();
+  }
+}
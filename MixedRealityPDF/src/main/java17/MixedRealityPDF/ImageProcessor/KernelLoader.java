@@ -0,0 +1,23 @@
+package MixedRealityPDF.ImageProcessor;
+
+/**
+ * Picks the PixelKernels implementation. Java 17 version: the SIMD kernels if the jdk.incubator.vector module has been
+ * added to the running JVM (--add-modules jdk.incubator.vector) and they haven't been turned off with
+ * -DMixedRealityPDF.vectorKernels=false, the scalar ones otherwise.
+ */
+final class KernelLoader {
+
+  private KernelLoader() {}
+
+  static PixelKernels load() {
+    boolean wanted = !"false".equals(System.getProperty("MixedRealityPDF.vectorKernels"));
+    if (wanted && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+      try {
+        return new VectorPixelKernels();
+      } catch (LinkageError e) {
+        // The module is there but unusable on this platform; the scalar kernels give the same results.
+      }
+    }
+    return new PixelKernels();
+  }
+}
@@ -0,0 +1,110 @@
+package MixedRealityPDF.ImageProcessor;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * PixelKernels on the Vector API, working on as many pixels at once as the CPU's widest vectors hold. Each method ends
+ * with a scalar loop over the pixels left over that don't fill a vector.
+ */
+final class VectorPixelKernels extends PixelKernels {
+
+  private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+  private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+  @Override
+  public String getName() {
+    return "vector, " + INTS.vectorBitSize() + " bits";
+  }
+
+  @Override
+  public void classifyInk(int[] argb, int offset, int length, int blackBelow, int colouredAbove,
+                          long[] black, long[] coloured, int wordOffset) {
+    // A vector holds 2 to 16 ints, a whole number of which make up a 64 bit word, so the bits of one vector's lanes
+    // always land in the same word.
+    int lanes = INTS.length();
+    int bound = INTS.loopBound(length);
+    int x = 0;
+    for (; x < bound; x += lanes) {
+      IntVector v = IntVector.fromArray(INTS, argb, offset + x);
+      IntVector r = v.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+      IntVector g = v.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+      IntVector b = v.and(0xFF);
+      IntVector lengthSquared = r.mul(r).add(g.mul(g)).add(b.mul(b));
+      IntVector rg = r.sub(g), gb = g.sub(b), rb = r.sub(b);
+      IntVector spread = rg.mul(rg).add(gb.mul(gb)).add(rb.mul(rb));
+      int word = wordOffset + (x >>> 6);
+      black[word] |= lengthSquared.compare(VectorOperators.LT, blackBelow).toLong() << x;
+      coloured[word] |= spread.compare(VectorOperators.GT, colouredAbove).toLong() << x;
+    }
+    for (; x < length; x++) {
+      int rgb = argb[offset + x];
+      int r = (rgb >> 16) & 0xFF, g = (rgb >> 8) & 0xFF, b = rgb & 0xFF;
+      if (r * r + g * g + b * b < blackBelow)
+        black[wordOffset + (x >>> 6)] |= 1L << x;
+      if ((r - g) * (r - g) + (g - b) * (g - b) + (r - b) * (r - b) > colouredAbove)
+        coloured[wordOffset + (x >>> 6)] |= 1L << x;
+    }
+  }
+
+  @Override
+  public void selectDifferent(int[] a, int aOffset, int aOpaque, int[] b, int bOffset, int length,
+                              int minSquaredDistance, int[] out, int outOffset, int fill) {
+    IntVector fillVector = IntVector.broadcast(INTS, fill);
+    int lanes = INTS.length();
+    int bound = INTS.loopBound(length);
+    int x = 0;
+    for (; x < bound; x += lanes) {
+      IntVector p = IntVector.fromArray(INTS, a, aOffset + x);
+      IntVector q = IntVector.fromArray(INTS, b, bOffset + x);
+      IntVector dr = p.lanewise(VectorOperators.LSHR, 16).and(0xFF)
+              .sub(q.lanewise(VectorOperators.LSHR, 16).and(0xFF));
+      IntVector dg = p.lanewise(VectorOperators.LSHR, 8).and(0xFF)
+              .sub(q.lanewise(VectorOperators.LSHR, 8).and(0xFF));
+      IntVector db = p.and(0xFF).sub(q.and(0xFF));
+      VectorMask<Integer> far = dr.mul(dr).add(dg.mul(dg)).add(db.mul(db))
+              .compare(VectorOperators.GE, minSquaredDistance);
+      fillVector.blend(p.or(aOpaque), far).intoArray(out, outOffset + x);
+    }
+    super.selectDifferent(a, aOffset + x, aOpaque, b, bOffset + x, length - x, minSquaredDistance, out,
+            outOffset + x, fill);
+  }
+
+  @Override
+  public void luminosity(int[] argb, int offset, int length) {
+    int lanes = INTS.length();
+    int bound = INTS.loopBound(length);
+    int i = 0;
+    for (; i < bound; i += lanes) {
+      IntVector v = IntVector.fromArray(INTS, argb, offset + i);
+      v.lanewise(VectorOperators.LSHR, 16).and(0xFF)
+              .add(v.lanewise(VectorOperators.LSHR, 8).and(0xFF))
+              .add(v.and(0xFF))
+              .intoArray(argb, offset + i);
+    }
+    super.luminosity(argb, offset + i, length - i);
+  }
+
+  @Override
+  public long bitCount(long[] words, int from, int to) {
+    // The classic SWAR popcount in every lane, as Java 17's Vector API has no lane-wise bit count.
+    LongVector total = LongVector.zero(LONGS);
+    int lanes = LONGS.length();
+    int bound = from + LONGS.loopBound(to - from);
+    int i = from;
+    for (; i < bound; i += lanes) {
+      LongVector v = LongVector.fromArray(LONGS, words, i);
+      v = v.sub(v.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L));
+      v = v.and(0x3333333333333333L).add(v.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L));
+      v = v.add(v.lanewise(VectorOperators.LSHR, 4)).and(0x0F0F0F0F0F0F0F0FL);
+      v = v.add(v.lanewise(VectorOperators.LSHR, 8));
+      v = v.add(v.lanewise(VectorOperators.LSHR, 16));
+      v = v.add(v.lanewise(VectorOperators.LSHR, 32)).and(0x7F);
+      total = total.add(v);
+    }
+    return total.reduceLanes(VectorOperators.ADD) + super.bitCount(words, i, to);
+  }
+}
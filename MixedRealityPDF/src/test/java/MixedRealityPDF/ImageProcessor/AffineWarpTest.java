@@ -0,0 +1,181 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class AffineWarpTest {
+
+  private static final int WHITE = Color.WHITE.getRGB();
+
+  public static void main(String[] args) {
+    Random random = new Random(24);
+    BufferedImage noise = new BufferedImage(300, 400, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < noise.getHeight(); y++)
+      for (int x = 0; x < noise.getWidth(); x++)
+        noise.setRGB(x, y, random.nextInt());
+
+    // One warp samples the pixels Graphics2D.drawImage does. Where a pixel's centre falls exactly on the edge between
+    // two pixels of the input, Graphics2D takes one or the other depending on the scale; AffineWarp always takes the
+    // one after the edge.
+    double[][] scales = {{1, 1}, {2, 3}, {0.5, 0.5}, {612 / 300.0, 792 / 400.0}, {0.37, 0.91}, {1.03, 0.97}};
+    for (double[] scale : scales) {
+      int width = (int) Math.round(noise.getWidth() * scale[0]);
+      int height = (int) Math.round(noise.getHeight() * scale[1]);
+      AffineTransform transform = AffineTransform.getTranslateInstance(-3, 5);
+      transform.scale(scale[0], scale[1]);
+      BufferedImage drawn = draw(noise, transform, width, height);
+      BufferedImage warped = warp(noise, transform, width, height);
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          if (warped.getRGB(x, y) == drawn.getRGB(x, y))
+            continue;
+          double sx = (x + 0.5 + 3) / scale[0], sy = (y + 0.5 - 5) / scale[1];
+          boolean onEdge = sx == Math.floor(sx) || sy == Math.floor(sy);
+          if (!onEdge || !fromAround(noise, sx, sy, drawn.getRGB(x, y)))
+            throw new AssertionError("Warp by " + transform + " differs from Graphics2D at " + x + "," + y);
+        }
+      }
+    }
+
+    // Composed warps against the resize, translation and scaling the scan used to go through one after the other.
+    // Where every step maps pixels onto pixels the two are the same.
+    expectSame(old(noise, 600, 800, 7, -5, 30, 40, 1, 1), aligned(noise, 600, 800, 7, -5, 30, 40, 1, 1));
+    expectSame(old(noise, 300, 400, -3, 11, 30, 40, 1, 1), aligned(noise, 300, 400, -3, 11, 30, 40, 1, 1));
+
+    // Otherwise each step used to move pixels by up to half a pixel, so strokes end up within a pixel or two of where
+    // they were. Strokes are thick enough to survive nearest-neighbour shrinking either way.
+    BufferedImage page = new BufferedImage(1000, 1300, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = page.createGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, page.getWidth(), page.getHeight());
+    graphics.setColor(Color.BLACK);
+    for (int i = 0; i < 200; i++) {
+      graphics.setStroke(new BasicStroke(4 + random.nextInt(3)));
+      graphics.drawLine(random.nextInt(1000), random.nextInt(1300), random.nextInt(1000), random.nextInt(1300));
+    }
+    graphics.dispose();
+    double[][] alignments = {{612, 792, 12, -9, 50, 60, 1.02, 0.97}, {612, 792, -4, 3, 70, 80, 0.95, 1.05},
+            {500, 650, 0, 0, 0, 0, 1.1, 1.1}};
+    for (double[] a : alignments) {
+      int width = (int) a[0], height = (int) a[1];
+      BufferedImage before = old(page, width, height, (int) a[2], (int) a[3], (int) a[4], (int) a[5], a[6], a[7]);
+      BufferedImage after = aligned(page, width, height, (int) a[2], (int) a[3], (int) a[4], (int) a[5], a[6], a[7]);
+      expectNear(before, after, a);
+      expectNear(after, before, a);
+    }
+
+    // Bilinear interpolation keeps flat colour flat and is exact on pixel centres.
+    BufferedImage grey = new BufferedImage(50, 50, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < 50; y++)
+      for (int x = 0; x < 50; x++)
+        grey.setRGB(x, y, 0xff808080);
+    BufferedImage smooth = new AffineWarp(AffineTransform.getScaleInstance(1.7, 1.3), AffineWarp.Interpolation.BILINEAR)
+            .apply(grey, 85, 65, BufferedImage.TYPE_INT_RGB, 0xff808080);
+    for (int y = 0; y < 65; y++)
+      for (int x = 0; x < 85; x++)
+        if (smooth.getRGB(x, y) != 0xff808080)
+          throw new AssertionError("Bilinear warp changed flat grey at " + x + "," + y);
+    expectSame(noise, new AffineWarp(new AffineTransform(), AffineWarp.Interpolation.BILINEAR)
+            .apply(noise, noise.getWidth(), noise.getHeight(), BufferedImage.TYPE_INT_RGB, WHITE));
+
+    // A transform that flattens the image leaves only background.
+    BufferedImage flat = new AffineWarp(AffineTransform.getScaleInstance(0, 1), AffineWarp.Interpolation.NEAREST_NEIGHBOUR)
+            .apply(noise, 20, 20, BufferedImage.TYPE_INT_RGB, WHITE);
+    for (int y = 0; y < 20; y++)
+      for (int x = 0; x < 20; x++)
+        if (flat.getRGB(x, y) != WHITE)
+          throw new AssertionError("A flattened image isn't all background");
+    System.out.println("AffineWarpTest passed");
+  }
+
+  // The scan resized to width x height, translated by (dx, dy) and scaled about (x0, y0), one Graphics2D pass at a time.
+  private static BufferedImage old(BufferedImage scan, int width, int height, int dx, int dy, int x0, int y0,
+                                   double kx, double ky) {
+    BufferedImage resized = draw(scan, AffineTransform.getScaleInstance(width / (double) scan.getWidth(),
+            height / (double) scan.getHeight()), width, height);
+    BufferedImage translated = draw(resized, AffineTransform.getTranslateInstance(dx, dy), width, height);
+    AffineTransform scale = AffineTransform.getTranslateInstance(x0, y0);
+    scale.scale(kx, ky);
+    scale.translate(-x0, -y0);
+    return draw(translated, scale, width, height);
+  }
+
+  // The same in one warp, composed as ImageWrapper composes it.
+  private static BufferedImage aligned(BufferedImage scan, int width, int height, int dx, int dy, int x0, int y0,
+                                       double kx, double ky) {
+    AffineTransform transform = AffineTransform.getTranslateInstance(x0, y0);
+    transform.scale(kx, ky);
+    transform.translate(-x0, -y0);
+    transform.translate(dx, dy);
+    transform.concatenate(AffineTransform.getScaleInstance(width / (double) scan.getWidth(),
+            height / (double) scan.getHeight()));
+    return warp(scan, transform, width, height);
+  }
+
+  private static BufferedImage warp(BufferedImage image, AffineTransform transform, int width, int height) {
+    return new AffineWarp(transform, AffineWarp.Interpolation.NEAREST_NEIGHBOUR)
+            .apply(image, width, height, BufferedImage.TYPE_INT_RGB, WHITE);
+  }
+
+  private static BufferedImage draw(BufferedImage image, AffineTransform transform, int width, int height) {
+    BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = out.createGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, width, height);
+    graphics.setTransform(transform);
+    graphics.drawImage(image, 0, 0, null);
+    graphics.dispose();
+    return out;
+  }
+
+  // Whether `argb' is one of the pixels of `image' touching point (sx, sy), or background.
+  private static boolean fromAround(BufferedImage image, double sx, double sy, int argb) {
+    if (argb == WHITE)
+      return true;
+    for (int y = (int) Math.floor(sy) - 1; y <= (int) Math.floor(sy); y++)
+      for (int x = (int) Math.floor(sx) - 1; x <= (int) Math.floor(sx); x++)
+        if (x >= 0 && y >= 0 && x < image.getWidth() && y < image.getHeight() && image.getRGB(x, y) == argb)
+          return true;
+    return false;
+  }
+
+  private static void expectSame(BufferedImage a, BufferedImage b) {
+    for (int y = 0; y < a.getHeight(); y++)
+      for (int x = 0; x < a.getWidth(); x++)
+        if (a.getRGB(x, y) != b.getRGB(x, y))
+          throw new AssertionError("Images differ at " + x + "," + y);
+  }
+
+  // Every dark pixel of `a' has a dark pixel of `b' within two pixels of it, except where the old steps took a pixel
+  // from outside the image before them: each lost what it moved off the page, where the composed warp still has the
+  // scan to take it from.
+  private static void expectNear(BufferedImage a, BufferedImage b, double[] alignment) {
+    int width = a.getWidth(), height = a.getHeight();
+    for (int y = 1; y < height - 1; y++) {
+      for (int x = 1; x < width - 1; x++) {
+        // Where the centre of (x, y) came from before the scaling, and before the translation.
+        double sx = alignment[4] + (x + 0.5 - alignment[4]) / alignment[6];
+        double sy = alignment[5] + (y + 0.5 - alignment[5]) / alignment[7];
+        double tx = sx - alignment[2], ty = sy - alignment[3];
+        if (sx < 1 || sy < 1 || sx > width - 1 || sy > height - 1 || tx < 1 || ty < 1 || tx > width - 1
+                || ty > height - 1 || !isDark(a, x, y))
+          continue;
+        boolean near = false;
+        for (int dy = -2; dy <= 2 && !near; dy++)
+          for (int dx = -2; dx <= 2 && !near; dx++)
+            near = isDark(b, x + dx, y + dy);
+        if (!near)
+          throw new AssertionError("Ink at " + x + "," + y + " moved more than two pixels");
+      }
+    }
+  }
+
+  private static boolean isDark(BufferedImage image, int x, int y) {
+    return x >= 0 && y >= 0 && x < image.getWidth() && y < image.getHeight() && (image.getRGB(x, y) & 0xFF) < 128;
+  }
+
+}
@@ -0,0 +1,129 @@
+package MixedRealityPDF.ImageProcessor.Binarization;
+
+import MixedRealityPDF.ImageProcessor.BitMask;
+import MixedRealityPDF.ImageProcessor.IBinarizer;
+import MixedRealityPDF.ImageProcessor.InkMap;
+import MixedRealityPDF.ImageProcessor.PixelBuffer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class BinarizerTest {
+
+  public static void main(String[] args) {
+    // The global threshold against the test ImageWrapper used to make of every pixel, for every colour.
+    for (double threshold : new double[]{InkMap.BLACK_THRESHOLD, 0.05, 1.0 / 3, 0.5, 1}) {
+      GlobalBinarizer binarizer = new GlobalBinarizer(threshold);
+      BufferedImage colours = new BufferedImage(4096, 16, BufferedImage.TYPE_INT_RGB);
+      for (int first = 0; first < 1 << 24; first += 4096 * 16) {
+        for (int i = 0; i < 4096 * 16; i++)
+          colours.setRGB(i % 4096, i / 4096, first + i);
+        BitMask black = binarizer.binarize(colours);
+        for (int i = 0; i < 4096 * 16; i++)
+          if (black.get(i % 4096, i / 4096) != isABlackPixel(first + i, threshold))
+            throw new AssertionError(String.format("%06x at %s", first + i, threshold));
+      }
+    }
+
+    Random random = new Random(19);
+    BufferedImage page = page(random, 120, 90);
+    PixelBuffer pixels = PixelBuffer.of(page);
+
+    // Sums of any rectangle against adding up its pixels.
+    IntegralImage integral = IntegralImage.of(pixels, true);
+    for (int i = 0; i < 2000; i++) {
+      int x0 = random.nextInt(121), x1 = random.nextInt(121), y0 = random.nextInt(91), y1 = random.nextInt(91);
+      int left = Math.min(x0, x1), right = Math.max(x0, x1), top = Math.min(y0, y1), bottom = Math.max(y0, y1);
+      long[] expected = sums(pixels, left, top, right, bottom);
+      if (integral.sum(left, top, right, bottom) != expected[0]
+              || integral.sumOfSquares(left, top, right, bottom) != expected[1])
+        throw new AssertionError("Sums of " + left + "," + top + " to " + right + "," + bottom + " differ");
+    }
+
+    // The tables wrap, but the sums of the largest window are still exact, even all white.
+    int side = (int) Math.sqrt(IntegralImage.MAX_AREA);
+    BufferedImage white = new BufferedImage(side + 3, side + 3, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < white.getHeight(); y++)
+      for (int x = 0; x < white.getWidth(); x++)
+        white.setRGB(x, y, -1);
+    IntegralImage whiteIntegral = IntegralImage.of(PixelBuffer.of(white), true);
+    if (whiteIntegral.sum(2, 1, 2 + side, 1 + side) != 255L * side * side
+            || whiteIntegral.sumOfSquares(2, 1, 2 + side, 1 + side) != 255L * 255 * side * side)
+      throw new AssertionError("The largest window's sums aren't exact");
+
+    // Adaptive binarizers against working out each pixel's window, cut down at the page's edges, from scratch.
+    AdaptiveBinarizer[] adaptive = {new SauvolaBinarizer(), new SauvolaBinarizer(15, 0.2), new SauvolaBinarizer(1, 0.5),
+            new BradleyBinarizer(), new BradleyBinarizer(15, 0.15), new BradleyBinarizer(31, 0)};
+    for (AdaptiveBinarizer binarizer : adaptive) {
+      BitMask ink = binarizer.binarize(pixels);
+      // A window of one pixel has no deviation, so only pure black is ink there.
+      if (binarizer.getWindow() > 1
+              && (ink.cardinality() == 0 || ink.cardinality() == page.getWidth() * page.getHeight()))
+        throw new AssertionError(binarizer.getClass().getSimpleName() + " finds ink everywhere or nowhere");
+      int half = binarizer.getWindow() / 2;
+      for (int y = 0; y < page.getHeight(); y++) {
+        for (int x = 0; x < page.getWidth(); x++) {
+          int x0 = Math.max(0, x - half), x1 = Math.min(page.getWidth(), x + half + 1);
+          int y0 = Math.max(0, y - half), y1 = Math.min(page.getHeight(), y + half + 1);
+          long[] window = sums(pixels, x0, y0, x1, y1);
+          boolean expected = binarizer.isInk(IntegralImage.grey(pixels.get(x, y)), (x1 - x0) * (y1 - y0), window[0],
+                  window[1]);
+          if (ink.get(x, y) != expected)
+            throw new AssertionError(binarizer.getClass().getSimpleName() + " " + binarizer.getWindow()
+                    + " differs at " + x + "," + y);
+        }
+      }
+    }
+
+    // InkMap's single pass finds the black pixels a global binarizer does, and uses any other binarizer as it is.
+    IBinarizer[] binarizers = {GlobalBinarizer.DEFAULT, new GlobalBinarizer(0.4), new SauvolaBinarizer(15, 0.3)};
+    for (IBinarizer binarizer : binarizers) {
+      InkMap map = InkMap.of(pixels, binarizer, InkMap.COLOUR_THRESHOLD);
+      if (!map.getBlack().equals(binarizer.binarize(pixels)))
+        throw new AssertionError("InkMap's black pixels differ from " + binarizer.getClass().getSimpleName());
+    }
+
+    try {
+      new SauvolaBinarizer(50, 0.3);
+      throw new AssertionError("An even window was taken");
+    } catch (IllegalArgumentException expected) {
+    }
+    System.out.println("BinarizerTest passed");
+  }
+
+  // As ImageWrapper.isABlackPixel was.
+  private static boolean isABlackPixel(int rgb, double threshold) {
+    Color c = new Color(rgb);
+    int sumlengthsquared = (int) (Math.pow(c.getRed(), 2) + Math.pow(c.getGreen(), 2) + Math.pow(c.getBlue(), 2));
+    return sumlengthsquared < threshold * Math.pow(255, 2) * 3;
+  }
+
+  // Lit unevenly from one corner, with lines of dark marks and some noise.
+  private static BufferedImage page(Random random, int width, int height) {
+    BufferedImage page = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int paper = 120 + 130 * (x + y) / (width + height);
+        boolean mark = y % 12 < 3 && random.nextInt(3) > 0;
+        int grey = Math.max(0, Math.min(255, (mark ? paper / 3 : paper) + random.nextInt(21) - 10));
+        page.setRGB(x, y, grey << 16 | grey << 8 | Math.min(255, grey + random.nextInt(3)));
+      }
+    }
+    return page;
+  }
+
+  // The sum of the grey levels of the pixels of a rectangle, and of their squares.
+  private static long[] sums(PixelBuffer pixels, int x0, int y0, int x1, int y1) {
+    long sum = 0, squares = 0;
+    for (int y = y0; y < y1; y++) {
+      for (int x = x0; x < x1; x++) {
+        int grey = IntegralImage.grey(pixels.get(x, y));
+        sum += grey;
+        squares += grey * grey;
+      }
+    }
+    return new long[]{sum, squares};
+  }
+
+}
@@ -0,0 +1,168 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BitMaskTest {
+
+  public static void main(String[] args) {
+    Random random = new Random(12);
+    // Widths either side of a word's worth of bits.
+    int[] widths = {1, 5, 63, 64, 65, 127, 128, 200};
+    for (int width : widths) {
+      int height = 1 + random.nextInt(20);
+      for (double density : new double[]{0, 0.05, 0.5, 1}) {
+        boolean[][] a = random(random, width, height, density), b = random(random, width, height, 0.5);
+        BitMask maskA = mask(a), maskB = mask(b);
+        expect(a, maskA);
+        expectQueries(a, maskA);
+
+        expect(combine(a, b, 0), maskA.copy().and(maskB));
+        expect(combine(a, b, 1), maskA.copy().or(maskB));
+        expect(combine(a, b, 2), maskA.copy().xor(maskB));
+        expect(combine(a, b, 3), maskA.copy().andNot(maskB));
+
+        int[] shifts = {0, 1, -1, 3, -7, 63, -63, 64, -64, 65, -65, width - 1, -(width - 1), width, -width};
+        for (int dx : shifts)
+          for (int dy : new int[]{0, 1, -2, height - 1, -height})
+            expect(shift(a, dx, dy), maskA.shift(dx, dy));
+
+        BitMask copy = BitMask.fromLongArray(width, height, maskA.toLongArray());
+        if (!copy.equals(maskA) || copy.hashCode() != maskA.hashCode())
+          throw new AssertionError("A mask differs from itself once through toLongArray");
+        copy.set(0, 0, !a[0][0]);
+        if (maskA.get(0, 0) != a[0][0])
+          throw new AssertionError("A copy shares its bits");
+      }
+    }
+
+    // where() and nonBlank() against testing every pixel.
+    BufferedImage image = new BufferedImage(130, 40, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < 40; y++)
+      for (int x = 0; x < 130; x++)
+        image.setRGB(x, y, random.nextInt(3) == 0 ? random.nextInt() : random.nextBoolean() ? -1 : 0);
+    BitMask nonBlank = BitMask.nonBlank(image), red = BitMask.where(image, argb -> PixelBuffer.red(argb) > 128);
+    for (int y = 0; y < 40; y++) {
+      for (int x = 0; x < 130; x++) {
+        int argb = image.getRGB(x, y);
+        if (nonBlank.get(x, y) != (argb != -1 && argb != 0) || red.get(x, y) != PixelBuffer.red(argb) > 128)
+          throw new AssertionError("where() differs at " + x + "," + y);
+      }
+    }
+    System.out.println("BitMaskTest passed");
+  }
+
+  private static boolean[][] random(Random random, int width, int height, double density) {
+    boolean[][] bits = new boolean[width][height];
+    for (int x = 0; x < width; x++)
+      for (int y = 0; y < height; y++)
+        bits[x][y] = random.nextDouble() < density;
+    return bits;
+  }
+
+  // Built a bit at a time, setting and clearing in every way there is.
+  private static BitMask mask(boolean[][] bits) {
+    BitMask mask = new BitMask(bits.length, bits[0].length);
+    for (int x = 0; x < bits.length; x++) {
+      for (int y = 0; y < bits[0].length; y++) {
+        if ((x + y) % 3 == 0)
+          mask.set(x, y, bits[x][y]);
+        else if (bits[x][y])
+          mask.set(x, y);
+        else {
+          mask.set(x, y);
+          mask.clear(x, y);
+        }
+      }
+    }
+    return mask;
+  }
+
+  private static boolean[][] combine(boolean[][] a, boolean[][] b, int op) {
+    boolean[][] out = new boolean[a.length][a[0].length];
+    for (int x = 0; x < a.length; x++)
+      for (int y = 0; y < a[0].length; y++)
+        out[x][y] = op == 0 ? a[x][y] & b[x][y] : op == 1 ? a[x][y] | b[x][y] : op == 2 ? a[x][y] ^ b[x][y]
+                : a[x][y] & !b[x][y];
+    return out;
+  }
+
+  private static boolean[][] shift(boolean[][] bits, int dx, int dy) {
+    int width = bits.length, height = bits[0].length;
+    boolean[][] out = new boolean[width][height];
+    for (int x = 0; x < width; x++)
+      for (int y = 0; y < height; y++)
+        if (x + dx >= 0 && x + dx < width && y + dy >= 0 && y + dy < height)
+          out[x + dx][y + dy] = bits[x][y];
+    return out;
+  }
+
+  // Same bits, and the same mask as one built from them, so no stray bits beyond the width.
+  private static void expect(boolean[][] bits, BitMask mask) {
+    int width = bits.length, height = bits[0].length;
+    if (mask.getWidth() != width || mask.getHeight() != height)
+      throw new AssertionError("Mask is " + mask.getWidth() + "x" + mask.getHeight());
+    for (int x = 0; x < width; x++)
+      for (int y = 0; y < height; y++)
+        if (mask.get(x, y) != bits[x][y])
+          throw new AssertionError("Bit " + x + "," + y + " of a " + width + "x" + height + " mask differs");
+    BitMask built = new BitMask(width, height);
+    for (int x = 0; x < width; x++)
+      for (int y = 0; y < height; y++)
+        if (bits[x][y])
+          built.set(x, y);
+    if (!mask.equals(built) || mask.cardinality() != built.cardinality())
+      throw new AssertionError("A " + width + "x" + height + " mask has bits set past its width");
+  }
+
+  private static void expectQueries(boolean[][] bits, BitMask mask) {
+    int width = bits.length, height = bits[0].length;
+    long total = 0;
+    List<int[]> expected = new ArrayList<>();
+    for (int y = 0; y < height; y++) {
+      int count = 0, first = -1, last = -1;
+      for (int x = 0; x <= width; x++) {
+        if (mask.rowCardinality(y, x) != count)
+          throw new AssertionError("rowCardinality(" + y + ", " + x + ") differs");
+        if (x == width)
+          break;
+        if (bits[x][y]) {
+          count++;
+          if (first < 0)
+            first = x;
+          last = x;
+          expected.add(new int[]{x, y});
+        }
+      }
+      if (mask.rowCardinality(y) != count || mask.firstInRow(y) != first || mask.lastInRow(y) != last)
+        throw new AssertionError("Row " + y + " of a " + width + "-wide mask differs");
+      total += count;
+    }
+    if (mask.cardinality() != total)
+      throw new AssertionError("cardinality differs");
+
+    // forEach goes in row-major order, over all rows or some.
+    List<int[]> visited = new ArrayList<>();
+    mask.forEach((x, y) -> visited.add(new int[]{x, y}));
+    expectSameOrder(expected, visited);
+    int from = height / 3, to = height - height / 3;
+    List<int[]> some = new ArrayList<>();
+    mask.forEach(from, to, (x, y) -> some.add(new int[]{x, y}));
+    List<int[]> expectedSome = new ArrayList<>();
+    for (int[] p : expected)
+      if (p[1] >= from && p[1] < to)
+        expectedSome.add(p);
+    expectSameOrder(expectedSome, some);
+  }
+
+  private static void expectSameOrder(List<int[]> expected, List<int[]> actual) {
+    if (expected.size() != actual.size())
+      throw new AssertionError("forEach visited " + actual.size() + " bits, not " + expected.size());
+    for (int i = 0; i < expected.size(); i++)
+      if (expected.get(i)[0] != actual.get(i)[0] || expected.get(i)[1] != actual.get(i)[1])
+        throw new AssertionError("forEach out of order at bit " + i);
+  }
+
+}
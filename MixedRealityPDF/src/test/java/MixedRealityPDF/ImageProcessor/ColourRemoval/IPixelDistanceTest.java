@@ -0,0 +1,54 @@
+package MixedRealityPDF.ImageProcessor.ColourRemoval;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.function.DoublePredicate;
+
+public class IPixelDistanceTest {
+
+  // Differ's threshold, Subtractor's defaults, the ends of the range, and thresholds no distance falls on.
+  private static final double[] THRESHOLDS = {0.3, 0.1, 0.05, 0, 1, 0.5, 1.0 / 3, 0.123456};
+
+  public static void main(String[] args) {
+    IPixelDistance[] distances = {new EuclidianSquared(), new Euclidian(), new WeightedLuma()};
+    for (IPixelDistance d : distances) {
+      for (double threshold : THRESHOLDS) {
+        check(d, "> " + threshold, fraction -> fraction > threshold);
+        check(d, ">= " + threshold, fraction -> fraction >= threshold);
+      }
+    }
+
+    // Random pixels against the distances as they were worked out on Colors.
+    Random random = new Random(14);
+    for (int i = 0; i < 1000000; i++) {
+      int a = random.nextInt(), b = random.nextInt();
+      if (i % 4 == 0)
+        b = a ^ (random.nextInt() & 0x0f0f0f);
+      Color aCol = new Color(a, true), bCol = new Color(b, true);
+      double squared = Math.pow(aCol.getRed() - bCol.getRed(), 2)
+              + Math.pow(aCol.getGreen() - bCol.getGreen(), 2)
+              + Math.pow(aCol.getBlue() - bCol.getBlue(), 2);
+      expect(distances[0], a, b, squared / (3 * Math.pow(255, 2)));
+      expect(distances[1], a, b, Math.sqrt(squared) / Math.sqrt(3 * Math.pow(255, 2)));
+    }
+    System.out.println("IPixelDistanceTest passed");
+  }
+
+  // firstScoreWhere against testing every score.
+  private static void check(IPixelDistance d, String name, DoublePredicate test) {
+    int first = d.firstScoreWhere(test);
+    for (int score = 0; score <= d.maxScore(); score++) {
+      if (test.test(d.distanceOf(score) / d.max()) != score >= first)
+        throw new AssertionError(d.getClass().getSimpleName() + " " + name + ": score " + score + ", first " + first);
+    }
+  }
+
+  private static void expect(IPixelDistance d, int a, int b, double fraction) {
+    for (double threshold : THRESHOLDS) {
+      if ((fraction > threshold) != d.score(a, b) >= d.firstScoreWhere(f -> f > threshold))
+        throw new AssertionError(String.format("%s of %08x and %08x at %s", d.getClass().getSimpleName(), a, b,
+                threshold));
+    }
+  }
+
+}
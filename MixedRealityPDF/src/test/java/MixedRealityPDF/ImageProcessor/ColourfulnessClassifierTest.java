@@ -0,0 +1,36 @@
+package MixedRealityPDF.ImageProcessor;
+
+public class ColourfulnessClassifierTest {
+
+  // The default threshold, thresholds where 6t^2 is a whole number, and a few others.
+  private static final double[] THRESHOLDS = {0.1f, 0, 1, 2, 5, 10, 12.5, 25.5, 60, 147.3, 255, -1};
+
+  @SuppressWarnings("deprecation")
+  public static void main(String[] args) {
+    // Every colour, as Stats.getStdDev would judge it; alpha is ignored by both.
+    for (double threshold : THRESHOLDS) {
+      ColourfulnessClassifier classifier = new ColourfulnessClassifier(threshold);
+      for (int rgb = 0; rgb < 1 << 24; rgb++) {
+        int argb = 0xff000000 | rgb;
+        double stdev = Stats.getStdDev(new double[]{PixelBuffer.red(argb), PixelBuffer.green(argb),
+                PixelBuffer.blue(argb)});
+        if (classifier.isColoured(argb) != stdev > threshold)
+          throw new AssertionError(String.format("isColoured(%06x) at %s, stdev %s", rgb, threshold, stdev));
+        if (classifier.isGrey(argb) != stdev < threshold)
+          throw new AssertionError(String.format("isGrey(%06x) at %s, stdev %s", rgb, threshold, stdev));
+      }
+    }
+
+    // ImgHelper.isColor keeps its old threshold, and its overload still takes any.
+    for (int rgb = 0; rgb < 1 << 24; rgb += 97) {
+      double stdev = Stats.getStdDev(new double[]{PixelBuffer.red(rgb), PixelBuffer.green(rgb),
+              PixelBuffer.blue(rgb)});
+      if (ImgHelper.isColor(rgb) != stdev > 0.1f)
+        throw new AssertionError(String.format("isColor(%06x)", rgb));
+      if (ImgHelper.isColor(rgb, 30f) != stdev > 30f)
+        throw new AssertionError(String.format("isColor(%06x, 30)", rgb));
+    }
+    System.out.println("ColourfulnessClassifierTest passed");
+  }
+
+}
@@ -0,0 +1,90 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class CompactPageTest {
+
+  public static void main(String[] args) {
+    Random random = new Random(22);
+    for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR}) {
+      BufferedImage page = page(random, 130, 90, type);
+      CompactPage compact = CompactPage.of(page);
+      if (compact.getWidth() != 130 || compact.getHeight() != 90)
+        throw new AssertionError("Wrong size");
+
+      // Exactly the page, bar alpha, however it is read back.
+      BufferedImage whole = compact.toImage();
+      int[] row = new int[132];
+      for (int y = 0; y < 90; y++) {
+        compact.getRow(y, row, 2);
+        for (int x = 0; x < 130; x++) {
+          int expected = page.getRGB(x, y) | 0xff000000;
+          if (compact.getRGB(x, y) != expected || row[2 + x] != expected || whole.getRGB(x, y) != expected)
+            throw new AssertionError("Type " + type + " differs at " + x + "," + y);
+          int r = PixelBuffer.red(expected);
+          boolean grey = r == PixelBuffer.green(expected) && r == PixelBuffer.blue(expected);
+          if (compact.isColoured(x, y) == grey || compact.getColouredMask().get(x, y) == grey)
+            throw new AssertionError("Pixel " + x + "," + y + " is wrongly coloured");
+          if (compact.getLuma(x, y) != CompactPage.luma(expected))
+            throw new AssertionError("Luma differs at " + x + "," + y);
+        }
+      }
+
+      // Crops, including ones cutting through runs of coloured pixels and at the page's edges.
+      int[][] crops = {{0, 0, 130, 90}, {17, 3, 40, 20}, {129, 89, 1, 1}, {0, 45, 130, 1}, {64, 0, 66, 90}};
+      for (int[] c : crops) {
+        BufferedImage crop = compact.crop(c[0], c[1], c[2], c[3]);
+        for (int y = 0; y < c[3]; y++)
+          for (int x = 0; x < c[2]; x++)
+            if (crop.getRGB(x, y) != (page.getRGB(c[0] + x, c[1] + y) | 0xff000000))
+              throw new AssertionError("Crop at " + c[0] + "," + c[1] + " differs at " + x + "," + y);
+      }
+      try {
+        compact.crop(100, 0, 31, 10);
+        throw new AssertionError("Cropped outside the page");
+      } catch (IndexOutOfBoundsException expected) {
+      }
+    }
+
+    // A grey page has no coloured pixels, so costs little more than a byte a pixel.
+    BufferedImage grey = new BufferedImage(200, 100, BufferedImage.TYPE_BYTE_GRAY);
+    for (int y = 0; y < 100; y++)
+      for (int x = 0; x < 200; x++)
+        grey.getRaster().setSample(x, y, 0, random.nextInt(256));
+    CompactPage compactGrey = CompactPage.of(grey);
+    if (compactGrey.getColouredMask().cardinality() != 0 || compactGrey.bytes() > 2 * 200 * 100)
+      throw new AssertionError("A grey page kept colours: " + compactGrey.bytes() + " bytes");
+    for (int y = 0; y < 100; y++)
+      for (int x = 0; x < 200; x++)
+        if (compactGrey.getRGB(x, y) != grey.getRGB(x, y))
+          throw new AssertionError("Grey page differs at " + x + "," + y);
+    System.out.println("CompactPageTest passed");
+  }
+
+  // Mostly greys, with runs of colour, faint tints a level off grey, and translucent pixels.
+  private static BufferedImage page(Random random, int width, int height, int type) {
+    BufferedImage page = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int l = random.nextInt(256), argb;
+        switch (random.nextInt(8)) {
+          case 0:
+            argb = 0xff000000 | random.nextInt(0xffffff);
+            break;
+          case 1:
+            argb = 0xff000000 | l << 16 | l << 8 | Math.max(0, l - 1);
+            break;
+          case 2:
+            argb = random.nextInt(0x7f) << 24 | l << 16 | l << 8 | l;
+            break;
+          default:
+            argb = 0xff000000 | l << 16 | l << 8 | l;
+        }
+        page.setRGB(x, y, argb);
+      }
+    }
+    return page;
+  }
+
+}
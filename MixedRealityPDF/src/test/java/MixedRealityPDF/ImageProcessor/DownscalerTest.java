@@ -0,0 +1,118 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class DownscalerTest {
+
+  public static void main(String[] args) {
+    Random random = new Random(25);
+
+    // Pooling against testing every pixel against every cell, in exact arithmetic: pixel x covers [x, x + 1) of the
+    // difference, which cell c covers [c * inWidth / width, (c + 1) * inWidth / width) of.
+    int[][] sizes = {{97, 131, 31, 40}, {100, 100, 10, 10}, {64, 48, 64, 48}, {50, 70, 1, 1}, {33, 7, 32, 6},
+            {200, 150, 199, 3}};
+    for (int[] size : sizes) {
+      int inWidth = size[0], inHeight = size[1], width = size[2], height = size[3];
+      for (double ink : new double[]{0, 0.001, 0.05, 1}) {
+        BufferedImage image = difference(random, inWidth, inHeight, ink);
+        BitMask pooled = Downscaler.orPool(SparseDifference.of(image), width, height);
+        for (int cy = 0; cy < height; cy++) {
+          for (int cx = 0; cx < width; cx++) {
+            boolean any = false;
+            for (int y = 0; y < inHeight && !any; y++) {
+              if ((long) y * height >= (long) (cy + 1) * inHeight || (long) (y + 1) * height <= (long) cy * inHeight)
+                continue;
+              for (int x = 0; x < inWidth && !any; x++) {
+                any = (long) x * width < (long) (cx + 1) * inWidth && (long) (x + 1) * width > (long) cx * inWidth
+                        && !SparseDifference.isBlank(image.getRGB(x, y));
+              }
+            }
+            if (pooled.get(cx, cy) != any)
+              throw new AssertionError("Cell " + cx + "," + cy + " of " + inWidth + "x" + inHeight + " pooled to "
+                      + width + "x" + height);
+          }
+        }
+      }
+    }
+
+    // A single pixel of ink is never lost, wherever it is.
+    BufferedImage dot = new BufferedImage(501, 707, BufferedImage.TYPE_INT_ARGB);
+    for (int i = 0; i < 200; i++) {
+      int x = random.nextInt(501), y = random.nextInt(707);
+      dot.setRGB(x, y, 0xff000000);
+      BitMask pooled = Downscaler.orPool(SparseDifference.of(dot), 500 / 3, 707 / 3);
+      if (pooled.cardinality() == 0)
+        throw new AssertionError("Lost the ink at " + x + "," + y);
+      dot.setRGB(x, y, 0);
+    }
+
+    // Area averaging against the area-weighted mean of each pixel's part of the image.
+    int[][] shrinks = {{90, 60, 30, 20}, {97, 131, 31, 40}, {40, 40, 40, 40}, {77, 5, 3, 2}};
+    for (int[] size : shrinks) {
+      BufferedImage image = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_ARGB);
+      for (int y = 0; y < size[1]; y++)
+        for (int x = 0; x < size[0]; x++)
+          image.setRGB(x, y, random.nextInt());
+      BufferedImage shrunk = Downscaler.areaAverage(image, size[2], size[3]);
+      for (int y = 0; y < size[3]; y++)
+        for (int x = 0; x < size[2]; x++)
+          for (int shift = 0; shift < 32; shift += 8)
+            if (Math.abs((shrunk.getRGB(x, y) >>> shift & 0xFF) - mean(image, size[2], size[3], x, y, shift)) > 1)
+              throw new AssertionError("Shrinking " + size[0] + "x" + size[1] + " differs at " + x + "," + y);
+      PageBufferPool.shared().release(shrunk);
+    }
+
+    // A drawn image, averaged a strip at a time, against the same image averaged whole. Drawing is opaque, as scans
+    // are, since drawing blends translucent pixels.
+    int[][] drawn = {{200, 2600, 61, 800}, {150, 2100, 150, 2100}, {300, 400, 100, 133}, {64, 5000, 10, 13}};
+    for (int[] size : drawn) {
+      BufferedImage image = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+      for (int y = 0; y < size[1]; y++)
+        for (int x = 0; x < size[0]; x++)
+          image.setRGB(x, y, random.nextInt());
+      BufferedImage whole = Downscaler.areaAverage(image, size[2], size[3]);
+      BufferedImage strips = Downscaler.areaAverage(graphics -> graphics.drawImage(image, 0, 0, null), size[0],
+              size[1], size[2], size[3]);
+      for (int y = 0; y < size[3]; y++)
+        for (int x = 0; x < size[2]; x++)
+          if (whole.getRGB(x, y) != strips.getRGB(x, y))
+            throw new AssertionError("Shrinking " + size[0] + "x" + size[1] + " in strips differs at " + x + "," + y);
+    }
+
+    try {
+      Downscaler.areaAverage(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), 11, 5);
+      throw new AssertionError("Grew an image");
+    } catch (IllegalArgumentException expected) {
+    }
+    System.out.println("DownscalerTest passed");
+  }
+
+  // Ink on blank pixels of both kinds.
+  private static BufferedImage difference(Random random, int width, int height, double ink) {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        image.setRGB(x, y, random.nextDouble() < ink ? 0xff000000 | random.nextInt(0xffffff)
+                : random.nextBoolean() ? -1 : SparseDifference.BLANK);
+    return image;
+  }
+
+  // The channel at `shift' of pixel (ox, oy) of `image' shrunk to width x height.
+  private static double mean(BufferedImage image, int width, int height, int ox, int oy, int shift) {
+    double scaleX = image.getWidth() / (double) width, scaleY = image.getHeight() / (double) height;
+    double total = 0;
+    for (int y = 0; y < image.getHeight(); y++) {
+      double h = Math.min(y + 1, (oy + 1) * scaleY) - Math.max(y, oy * scaleY);
+      if (h <= 0)
+        continue;
+      for (int x = 0; x < image.getWidth(); x++) {
+        double w = Math.min(x + 1, (ox + 1) * scaleX) - Math.max(x, ox * scaleX);
+        if (w > 0)
+          total += w * h * (image.getRGB(x, y) >>> shift & 0xFF);
+      }
+    }
+    return total / (scaleX * scaleY);
+  }
+
+}
@@ -0,0 +1,44 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class ImgHelperTest {
+
+  public static void main(String[] args) {
+    Random random = new Random(18);
+    // Several rows at once however many processors there are.
+    ForkJoinPool pool = new ForkJoinPool(4);
+    // Narrower than a wavefront step, not a whole number of steps, one row, one column, and page sized.
+    int[][] sizes = {{1, 1}, {1, 300}, {300, 1}, {3, 3}, {63, 40}, {65, 129}, {200, 150}, {612, 792}, {1300, 900}};
+    for (int[] size : sizes) {
+      BufferedImage noise = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+      BufferedImage gradient = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+      for (int y = 0; y < size[1]; y++) {
+        for (int x = 0; x < size[0]; x++) {
+          noise.setRGB(x, y, random.nextInt());
+          int grey = 255 * (x + y) / (size[0] + size[1]);
+          gradient.setRGB(x, y, grey << 16 | grey << 8 | grey);
+        }
+      }
+      for (BufferedImage image : new BufferedImage[]{noise, gradient}) {
+        BitMask sequential = ImgHelper.computeBlackAndWhiteMask(image, false);
+        // Threads are scheduled differently every time.
+        for (int run = 0; run < 5; run++) {
+          if (!pool.submit(() -> ImgHelper.computeBlackAndWhiteMask(image, true)).join().equals(sequential))
+            throw new AssertionError("Wavefront dithering differs at " + size[0] + "x" + size[1]);
+        }
+
+        BufferedImage blackAndWhite = ImgHelper.computeBlackAndWhite(image);
+        for (int y = 0; y < size[1]; y++)
+          for (int x = 0; x < size[0]; x++)
+            if ((blackAndWhite.getRGB(x, y) == 0xff000000) != sequential.get(x, y))
+              throw new AssertionError("computeBlackAndWhite differs at " + x + "," + y);
+      }
+    }
+    pool.shutdown();
+    System.out.println("ImgHelperTest passed");
+  }
+
+}
@@ -0,0 +1,67 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+
+public class PageBufferPoolTest {
+
+  public static void main(String[] args) {
+    PageBufferPool pool = new PageBufferPool(3 * 4L * 100 * 80);
+
+    // A leased image given back is leased again, once.
+    BufferedImage leased = pool.lease(100, 80, BufferedImage.TYPE_INT_RGB);
+    pool.release(leased);
+    pool.release(leased);
+    if (pool.getBytes() != 4L * 100 * 80)
+      throw new AssertionError("Giving an image back twice kept it twice: " + pool.getBytes() + " bytes");
+    if (pool.lease(100, 80, BufferedImage.TYPE_INT_RGB) != leased)
+      throw new AssertionError("A free image wasn't leased again");
+    if (pool.lease(100, 80, BufferedImage.TYPE_INT_RGB) == leased)
+      throw new AssertionError("A leased image was leased twice");
+    if (pool.lease(100, 80, BufferedImage.TYPE_INT_ARGB).getType() != BufferedImage.TYPE_INT_ARGB
+            || pool.lease(80, 100, BufferedImage.TYPE_INT_RGB).getWidth() != 80)
+      throw new AssertionError("An image of another size or type was leased");
+
+    // Images the pool didn't lease out, or subimages of ones it did, are never taken back.
+    BufferedImage foreign = new BufferedImage(100, 80, BufferedImage.TYPE_INT_RGB);
+    pool.release(foreign);
+    BufferedImage parent = pool.lease(200, 160, BufferedImage.TYPE_INT_RGB);
+    pool.release(parent.getSubimage(0, 0, 100, 80));
+    if (pool.getBytes() != 0)
+      throw new AssertionError("Took back an image it hadn't leased");
+    if (pool.lease(100, 80, BufferedImage.TYPE_INT_RGB) == foreign)
+      throw new AssertionError("Leased out somebody else's image");
+
+    // Types it can't reuse in place are left to the collector, and null is ignored.
+    pool.release(pool.lease(100, 80, BufferedImage.TYPE_BYTE_GRAY));
+    pool.release(null);
+    if (pool.getBytes() != 0)
+      throw new AssertionError("Kept an image of a type it doesn't pool");
+
+    // Past its capacity, the images given back longest ago are dropped.
+    BufferedImage[] images = new BufferedImage[5];
+    for (int i = 0; i < images.length; i++)
+      images[i] = pool.lease(100, 80, BufferedImage.TYPE_INT_RGB);
+    for (BufferedImage image : images)
+      pool.release(image);
+    if (pool.getBytes() != 3 * 4L * 100 * 80)
+      throw new AssertionError("Holds " + pool.getBytes() + " bytes, more than its capacity");
+    BufferedImage newest = pool.lease(100, 80, BufferedImage.TYPE_INT_RGB);
+    if (newest != images[4])
+      throw new AssertionError("Didn't lease the image given back last");
+    pool.clear();
+    if (pool.getBytes() != 0 || pool.lease(100, 80, BufferedImage.TYPE_INT_RGB) == images[3])
+      throw new AssertionError("clear() kept free images");
+
+    // Leasing with a colour sets every pixel as setRGB would, with or without alpha.
+    BufferedImage rgb = pool.lease(30, 20, BufferedImage.TYPE_INT_RGB, 0x12345678);
+    BufferedImage argb = pool.lease(30, 20, BufferedImage.TYPE_INT_ARGB, 0x12345678);
+    BufferedImage grey = new BufferedImage(30, 20, BufferedImage.TYPE_BYTE_GRAY);
+    PageBufferPool.fill(grey, 0xff808080);
+    for (int y = 0; y < 20; y++)
+      for (int x = 0; x < 30; x++)
+        if (rgb.getRGB(x, y) != 0xff345678 || argb.getRGB(x, y) != 0x12345678 || grey.getRGB(x, y) != 0xff808080)
+          throw new AssertionError("Filled pixel " + x + "," + y + " differs");
+    System.out.println("PageBufferPoolTest passed");
+  }
+
+}
@@ -0,0 +1,70 @@
+package MixedRealityPDF.ImageProcessor;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+public class PixelBufferTest {
+
+  public static void main(String[] args) {
+    Random random = new Random(11);
+    int[] types = {BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE,
+            BufferedImage.TYPE_INT_BGR, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR,
+            BufferedImage.TYPE_BYTE_GRAY};
+    for (int type : types) {
+      BufferedImage whole = image(random, 70, 50, type);
+      check(random, whole);
+      // A subimage shares its parent's pixels but not its layout, so is converted rather than used in place.
+      check(random, whole.getSubimage(7, 5, 40, 30));
+    }
+    System.out.println("PixelBufferTest passed");
+  }
+
+  private static BufferedImage image(Random random, int width, int height, int type) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        image.setRGB(x, y, random.nextInt());
+    return image;
+  }
+
+  // Reads must give what getRGB gives, and writes must do what setRGB does.
+  private static void check(Random random, BufferedImage image) {
+    int width = image.getWidth(), height = image.getHeight();
+    BufferedImage reference = ImgHelper.copy(image);
+    PixelBuffer pixels = PixelBuffer.of(image);
+    if (pixels.getWidth() != width || pixels.getHeight() != height)
+      throw new AssertionError("Wrong size for type " + image.getType());
+    int[] row = new int[width + 3];
+    for (int y = 0; y < height; y++) {
+      pixels.getRow(y, row, 3);
+      for (int x = 0; x < width; x++) {
+        int expected = image.getRGB(x, y);
+        if (pixels.get(x, y) != expected || pixels.get(y * width + x) != expected || row[3 + x] != expected)
+          throw new AssertionError("Type " + image.getType() + " reads differ at " + x + "," + y);
+      }
+    }
+
+    for (int i = 0; i < 500; i++) {
+      int x = random.nextInt(width), y = random.nextInt(height), argb = random.nextInt();
+      if (random.nextBoolean())
+        pixels.set(x, y, argb);
+      else
+        pixels.set(y * width + x, argb);
+      reference.setRGB(x, y, argb);
+    }
+    BufferedImage written = pixels.toImage();
+    if (written != image)
+      throw new AssertionError("toImage gave another image");
+    for (int y = 0; y < height; y++)
+      for (int x = 0; x < width; x++)
+        if (written.getRGB(x, y) != reference.getRGB(x, y))
+          throw new AssertionError("Type " + image.getType() + " writes differ at " + x + "," + y);
+
+    // The channel helpers take apart what argb() puts together.
+    int argb = random.nextInt();
+    if (PixelBuffer.argb(PixelBuffer.alpha(argb), PixelBuffer.red(argb), PixelBuffer.green(argb),
+            PixelBuffer.blue(argb)) != argb)
+      throw new AssertionError("Channels of " + Integer.toHexString(argb) + " don't add up");
+  }
+
+}
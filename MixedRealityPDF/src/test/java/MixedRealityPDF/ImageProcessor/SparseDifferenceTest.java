@@ -0,0 +1,129 @@
+package MixedRealityPDF.ImageProcessor;
+
+import MixedRealityPDF.ImageProcessor.ColourRemoval.Differ;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class SparseDifferenceTest {
+
+  public static void main(String[] args) {
+    Random random = new Random(23);
+    // Several bands at once however many processors there are.
+    ForkJoinPool pool = new ForkJoinPool(4);
+    int[][] sizes = {{1, 1}, {1, 200}, {200, 1}, {64, 65}, {612, 792}};
+    for (int[] size : sizes) {
+      for (int type : new int[]{BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB}) {
+        for (double ink : new double[]{0, 0.01, 0.3, 1}) {
+          BufferedImage image = difference(random, size[0], size[1], type, ink);
+          SparseDifference difference = pool.submit(() -> SparseDifference.of(image)).join();
+          checkRoundTrip(image, difference);
+        }
+      }
+    }
+
+    // Differ's sparse difference against the whole-image one.
+    Differ differ = new Differ();
+    for (int[] size : sizes) {
+      BufferedImage original = page(random, size[0], size[1], BufferedImage.TYPE_INT_RGB);
+      BufferedImage scan = page(random, size[0], size[1], BufferedImage.TYPE_INT_ARGB);
+      CompactPage compact = CompactPage.of(original);
+      SparseDifference sparse = pool.submit(() -> differ.prepareSparse(compact).apply(scan)).join();
+      BufferedImage dense = differ.findDifference(original, scan);
+      BufferedImage image = sparse.toImage();
+      for (int y = 0; y < size[1]; y++)
+        for (int x = 0; x < size[0]; x++)
+          if (image.getRGB(x, y) != dense.getRGB(x, y))
+            throw new AssertionError("Differ's sparse difference differs at " + x + "," + y);
+    }
+    pool.shutdown();
+    System.out.println("SparseDifferenceTest passed");
+  }
+
+  // Runs of ink on blank pixels of both kinds, some reaching the edges of the image.
+  private static BufferedImage difference(Random random, int width, int height, int type, double ink) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; ) {
+        int length = 1 + random.nextInt(Math.min(width, 20));
+        boolean inked = random.nextDouble() < ink;
+        for (int end = Math.min(width, x + length); x < end; x++) {
+          int argb;
+          if (inked)
+            argb = 0xff000000 | random.nextInt(0xffffff);
+          else if (type == BufferedImage.TYPE_INT_ARGB && random.nextBoolean())
+            argb = random.nextInt(0xffffff);
+          else
+            argb = 0xffffffff;
+          image.setRGB(x, y, argb);
+        }
+      }
+    }
+    return image;
+  }
+
+  // A page of text-like blocks with a little noise.
+  private static BufferedImage page(Random random, int width, int height, int type) {
+    BufferedImage image = new BufferedImage(width, height, type);
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int grey = (x / 7 + y / 11) % 3 == 0 ? 30 : 250;
+        grey = Math.max(0, Math.min(255, grey + random.nextInt(9) - 4));
+        int argb = 0xff000000 | grey << 16 | grey << 8 | grey;
+        if (random.nextInt(50) == 0)
+          argb = 0xff000000 | random.nextInt(0xffffff);
+        image.setRGB(x, y, argb);
+      }
+    }
+    return image;
+  }
+
+  private static void checkRoundTrip(BufferedImage image, SparseDifference difference) {
+    int width = image.getWidth(), height = image.getHeight();
+    if (difference.getWidth() != width || difference.getHeight() != height || difference.getType() != image.getType())
+      throw new AssertionError("Wrong size or type");
+
+    BufferedImage back = difference.toImage();
+    if (back.getType() != image.getType())
+      throw new AssertionError("toImage gave type " + back.getType() + " for " + image.getType());
+    int count = 0;
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        int argb = image.getRGB(x, y);
+        boolean blank = SparseDifference.isBlank(argb);
+        if (!blank)
+          count++;
+        int expected = blank ? SparseDifference.BLANK : argb;
+        if (difference.get(x, y) != expected)
+          throw new AssertionError("get(" + x + ", " + y + ") differs");
+        // An image without alpha reads BLANK back as opaque white.
+        if (back.getRGB(x, y) != (image.getType() == BufferedImage.TYPE_INT_RGB ? expected | 0xff000000 : expected))
+          throw new AssertionError("toImage differs at " + x + "," + y);
+      }
+    }
+    if (difference.getPixelCount() != count || difference.isEmpty() != (count == 0))
+      throw new AssertionError("Counted " + difference.getPixelCount() + " pixels, not " + count);
+
+    // Spans are as long as they can be, in order, and cover exactly the pixels that aren't blank.
+    int[] covered = new int[1];
+    int[] last = {-1, -1};
+    difference.forEachSpan((x, y, length, colours, offset) -> {
+      if (y < last[1] || (y == last[1] && x <= last[0]))
+        throw new AssertionError("Span out of order at " + x + "," + y);
+      if (x > 0 && !SparseDifference.isBlank(image.getRGB(x - 1, y))
+              || x + length < width && !SparseDifference.isBlank(image.getRGB(x + length, y)))
+        throw new AssertionError("Span at " + x + "," + y + " could be longer");
+      for (int i = 0; i < length; i++)
+        if (colours[offset + i] != image.getRGB(x + i, y))
+          throw new AssertionError("Span colour differs at " + (x + i) + "," + y);
+      covered[0] += length;
+      last[0] = x;
+      last[1] = y;
+    });
+    if (covered[0] != count)
+      throw new AssertionError("Spans cover " + covered[0] + " pixels, not " + count);
+    PageBufferPool.shared().release(back);
+  }
+
+}
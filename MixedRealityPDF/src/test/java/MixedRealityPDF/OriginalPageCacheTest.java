@@ -0,0 +1,146 @@
+package MixedRealityPDF;
+
+import MixedRealityPDF.ImageProcessor.Alignment.PageAnalysis;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+public class OriginalPageCacheTest {
+
+  private static final String HASH = OriginalPageCache.hash(new byte[]{1, 2, 3});
+  private static final float DPI = 72;
+
+  public static void main(String[] args) throws IOException {
+    File directory = Files.createTempDirectory("page-cache").toFile();
+    try {
+      run(directory);
+    } finally {
+      for (File file : directory.listFiles())
+        file.delete();
+      directory.delete();
+    }
+    System.out.println("OriginalPageCacheTest passed");
+  }
+
+  private static void run(File directory) throws IOException {
+    BufferedImage page = page(150, 200);
+    OriginalPageCache.Entry entry = new OriginalPageCache.Entry(page, PageAnalysis.of(page));
+
+    // Put in one cache and read back by another, as after a restart.
+    new OriginalPageCache(0, directory).put(HASH, 0, DPI, entry);
+    expectSame(entry, new OriginalPageCache(0, directory).get(HASH, 0, DPI));
+    if (new OriginalPageCache(0, directory).get(HASH, 1, DPI) != null
+            || new OriginalPageCache(0, directory).get(HASH, 0, 144) != null)
+      throw new AssertionError("Another page or DPI hit the cache");
+
+    File file = pageFile(directory);
+    byte[] whole = Files.readAllBytes(file.toPath());
+    int analysisAt = 3 * 4 + 4 * page.getWidth() * page.getHeight();
+
+    // Cut short anywhere: before the header ends, in the pixels, in the analysis, a byte from the end.
+    for (int length : new int[]{0, 5, 12, 1000, analysisAt, analysisAt + 10, whole.length - 1})
+      expectDropped(file, Arrays.copyOf(whole, length), "cut to " + length + " bytes");
+    expectDropped(file, Arrays.copyOf(whole, whole.length + 1), "with a byte too many");
+
+    byte[] corrupt = whole.clone();
+    corrupt[0] ^= 1;
+    expectDropped(file, corrupt, "with the wrong magic");
+
+    // The right size for the page in the header, but the analysis of a page of another size.
+    byte[] mismatched = whole.clone();
+    ByteBuffer.wrap(mismatched).putInt(analysisAt, page.getHeight()).putInt(analysisAt + 4, page.getWidth());
+    expectDropped(file, mismatched, "with the analysis of a " + page.getHeight() + "x" + page.getWidth() + " page");
+
+    // A dropped file is written again the next time the page is put.
+    new OriginalPageCache(0, directory).put(HASH, 0, DPI, entry);
+    expectSame(entry, new OriginalPageCache(0, directory).get(HASH, 0, DPI));
+
+    // The heap tier keeps the most recently used pages that fit.
+    long bytes = 4L * page.getWidth() * page.getHeight() + entry.getAnalysis().serializedSize();
+    OriginalPageCache memory = new OriginalPageCache(2 * bytes, null);
+    memory.put(HASH, 0, DPI, entry);
+    memory.put(HASH, 1, DPI, entry);
+    memory.get(HASH, 0, DPI);
+    memory.put(HASH, 2, DPI, entry);
+    if (memory.get(HASH, 0, DPI) != entry || memory.get(HASH, 1, DPI) != null || memory.get(HASH, 2, DPI) != entry)
+      throw new AssertionError("The heap tier didn't drop the least recently used page");
+    memory.clearMemory();
+    if (memory.get(HASH, 0, DPI) != null)
+      throw new AssertionError("clearMemory kept a page");
+    if (new OriginalPageCache(bytes - 1, null).get(HASH, 0, DPI) != null)
+      throw new AssertionError("An empty cache had a page");
+
+    // Hashing a file a chunk at a time gives the hash of its bytes.
+    byte[] pdf = new byte[200000];
+    new java.util.Random(8).nextBytes(pdf);
+    File pdfFile = new File(directory, "original.pdf");
+    Files.write(pdfFile.toPath(), pdf);
+    if (!OriginalPageCache.hash(pdfFile).equals(OriginalPageCache.hash(pdf)))
+      throw new AssertionError("hash(File) differs from hash(byte[])");
+    pdfFile.delete();
+  }
+
+  // Some lines of text and a coloured mark.
+  private static BufferedImage page(int width, int height) {
+    BufferedImage page = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    Graphics2D graphics = page.createGraphics();
+    graphics.setColor(Color.WHITE);
+    graphics.fillRect(0, 0, width, height);
+    graphics.setColor(Color.BLACK);
+    graphics.setFont(new Font(Font.SANS_SERIF, Font.PLAIN, 10));
+    for (int y = 30; y < height - 30; y += 14)
+      graphics.drawString("The quick brown fox jumps", 15, y);
+    graphics.setColor(Color.RED);
+    graphics.fillOval(100, 150, 20, 10);
+    graphics.dispose();
+    return page;
+  }
+
+  private static File pageFile(File directory) {
+    File[] pages = directory.listFiles((dir, name) -> name.endsWith(".page"));
+    if (pages.length != 1)
+      throw new AssertionError(pages.length + " page files, not 1");
+    return pages[0];
+  }
+
+  // Puts `contents' in the page's file, which has been deleted if an earlier file was dropped.
+  private static void expectDropped(File file, byte[] contents, String how) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(0);
+      raf.write(contents);
+    }
+    if (new OriginalPageCache(0, file.getParentFile()).get(HASH, 0, DPI) != null)
+      throw new AssertionError("A cache file " + how + " was read");
+    if (file.exists())
+      throw new AssertionError("A cache file " + how + " wasn't deleted");
+  }
+
+  private static void expectSame(OriginalPageCache.Entry expected, OriginalPageCache.Entry actual) {
+    if (actual == null)
+      throw new AssertionError("The page wasn't cached");
+    BufferedImage a = expected.getImage(), b = actual.getImage();
+    if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight())
+      throw new AssertionError("The cached page is " + b.getWidth() + "x" + b.getHeight());
+    for (int y = 0; y < a.getHeight(); y++)
+      for (int x = 0; x < a.getWidth(); x++)
+        if (a.getRGB(x, y) != b.getRGB(x, y))
+          throw new AssertionError("The cached page differs at " + x + "," + y);
+    if (!Arrays.equals(serialized(expected.getAnalysis()), serialized(actual.getAnalysis())))
+      throw new AssertionError("The cached analysis differs");
+  }
+
+  private static byte[] serialized(PageAnalysis analysis) {
+    ByteBuffer buffer = ByteBuffer.allocate(analysis.serializedSize());
+    analysis.write(buffer);
+    return buffer.array();
+  }
+
+}